@@ -4,34 +4,661 @@ interface Appender {
     void append(String formattedMessage);
 }
 
+// Appenders that can take pre-encoded binary records
+interface BinaryAppender extends Appender {
+    void appendBinary(byte[] record);
+}
+
 class ConsoleAppender implements Appender {
     public void append(String formattedMessage) {
         System.out.println(formattedMessage);
     }
 }
 
+enum FsyncPolicy { NEVER, EVERY_BATCH, INTERVAL }
+
+// Size- and time-based rolling
+class RollingPolicy {
+    private final long maxFileBytes;
+    private final long maxFileAgeMillis;
+
+    public RollingPolicy(long maxFileBytes, long maxFileAgeMillis) {
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeMillis = maxFileAgeMillis;
+    }
+
+    public boolean shouldRoll(long fileBytes, long openedAtMillis, long nowMillis) {
+        return fileBytes >= maxFileBytes || nowMillis - openedAtMillis >= maxFileAgeMillis;
+    }
+}
+
+// Async file appender: callers only enqueue, a single writer thread group-commits
+// batches through a direct ByteBuffer and rolls/gzips files in the background
 class FileAppender implements Appender {
-    private String filePath;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int MAX_BATCH = 4096;
+
+    private final Path filePath;
+    private final RollingPolicy rollingPolicy;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+
+    private final BlockingQueue<byte[]> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-appender-gzip");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Both threads are daemons, so an appender that is never closed is still drained at exit
+    private final Thread shutdownHook = new Thread(this::drain, "file-appender-shutdown");
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private boolean failing;
+    private long fileBytes;
+    private long openedAt;
+    private long lastFsync;
+    private int rollSequence;
+
+    public FileAppender(String filePath, RollingPolicy rollingPolicy, FsyncPolicy fsyncPolicy,
+                        long fsyncIntervalMillis, int queueCapacity) {
+        this.filePath = Paths.get(filePath);
+        this.rollingPolicy = rollingPolicy;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        try {
+            openFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.writer = new Thread(this::writeLoop, "file-appender-" + this.filePath.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public void append(String formattedMessage) {
+        appendBytes((formattedMessage + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Never blocks the caller: a full queue drops the event and counts it
+    protected void appendBytes(byte[] record) {
+        if (!queue.offer(record)) dropped.incrementAndGet();
+    }
+
+    public long getDroppedCount() { return dropped.get(); }
+
+    public void close() throws InterruptedException {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already exiting; the hook is draining
+        }
+        awaitDrained();
+    }
+
+    private void drain() {
+        try {
+            awaitDrained();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        running = false;
+        writer.join();
+        compressor.shutdown();
+        compressor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    // An I/O failure (disk full, failed roll) costs the batch in hand, counted as dropped; the
+    // channel is reopened on the next pass so the writer never dies
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            byte[] first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                // Take the batch before (re)opening, so a failed open counts it as dropped
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+                if (channel == null) openFile();
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                maybeFsync(first != null);
+                if (rollingPolicy.shouldRoll(fileBytes, openedAt, System.currentTimeMillis())) roll();
+                if (failing && first != null) {
+                    failing = false;
+                    System.err.println("File appender " + filePath + " recovered; " + dropped.get() + " events dropped so far");
+                }
+            } catch (IOException e) {
+                dropped.addAndGet(batch.size());
+                discardChannel();
+                if (!failing) {
+                    failing = true;
+                    System.err.println("File appender " + filePath + " failed, dropping events until it recovers: " + e);
+                }
+            }
+            batch.clear();
+        }
+        if (channel != null) {
+            try {
+                force();
+            } catch (IOException e) {
+                System.err.println("Failed to flush " + filePath + ": " + e.getMessage());
+            }
+            discardChannel();
+        }
+    }
+
+    private void discardChannel() {
+        buffer.clear();
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+            // already failing; the next pass reopens
+        }
+        channel = null;
+    }
+
+    // Hooks for subclasses, called on the writer thread: a new file was opened, and bytes that
+    // must precede a record in the current file (null for none)
+    protected void onFileOpened() {}
+
+    protected byte[] preambleFor(byte[] record) { return null; }
+
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        for (byte[] record : batch) {
+            byte[] preamble = preambleFor(record);
+            if (preamble != null) writeRecord(preamble);
+            writeRecord(record);
+        }
+        flushBuffer();
+    }
+
+    private void writeRecord(byte[] record) throws IOException {
+        if (record.length > buffer.remaining()) flushBuffer();
+        if (record.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(record));
+        } else {
+            buffer.put(record);
+        }
+        fileBytes += record.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) channel.write(src);
+    }
+
+    private void maybeFsync(boolean wroteBatch) throws IOException {
+        long now = System.currentTimeMillis();
+        if (fsyncPolicy == FsyncPolicy.EVERY_BATCH && wroteBatch) {
+            force();
+        } else if (fsyncPolicy == FsyncPolicy.INTERVAL && now - lastFsync >= fsyncIntervalMillis) {
+            force();
+        }
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        lastFsync = System.currentTimeMillis();
+    }
+
+    private void roll() throws IOException {
+        if (fileBytes == 0) {
+            openedAt = System.currentTimeMillis();
+            return;
+        }
+        force();
+        channel.close();
+        Path rolled = filePath.resolveSibling(filePath.getFileName() + "." + openedAt + "." + (rollSequence++));
+        Files.move(filePath, rolled, StandardCopyOption.ATOMIC_MOVE);
+        compressor.submit(() -> gzip(rolled));
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        openedAt = System.currentTimeMillis();
+        onFileOpened();
+    }
+
+    private void gzip(Path rolled) {
+        Path target = rolled.resolveSibling(rolled.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(rolled);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+            in.transferTo(out);
+            Files.delete(rolled);
+        } catch (IOException e) {
+            System.err.println("Failed to compress " + rolled + ": " + e.getMessage());
+        }
+    }
+}
+
+// Binary file appender: events are written as template id + raw args, see BinaryLogCodec.
+// Each file carries its own dictionary: a template's definition is written ahead of its first
+// use in that file, so every file (and every rolled .gz) decodes on its own whatever ids
+// another run assigned
+class BinaryFileAppender extends FileAppender implements BinaryAppender {
+    // Writer thread only; assigned by onFileOpened, which the super constructor already calls
+    private BitSet definedInFile;
+
+    public BinaryFileAppender(String filePath, RollingPolicy rollingPolicy, FsyncPolicy fsyncPolicy,
+                              long fsyncIntervalMillis, int queueCapacity) {
+        super(filePath, rollingPolicy, fsyncPolicy, fsyncIntervalMillis, queueCapacity);
+    }
+
+    // Already formatted text is kept as a single-arg free-text record
     public void append(String formattedMessage) {
-        // append to file
+        appendBytes(BinaryLogCodec.encodeText(LogLevel.INFO, formattedMessage));
+    }
+
+    public void appendBinary(byte[] record) {
+        appendBytes(record);
+    }
+
+    protected void onFileOpened() {
+        definedInFile = new BitSet();
+    }
+
+    protected byte[] preambleFor(byte[] record) {
+        int templateId = BinaryLogCodec.templateIdOf(record);
+        if (templateId < 0 || definedInFile.get(templateId)) return null;
+        definedInFile.set(templateId);
+        return BinaryLogCodec.encodeDefinition(templateId, LogTemplates.get(templateId));
+    }
+}
+
+// Registry of call-site format templates; each template is registered once and referenced by id.
+// Ids are only meaningful within this run, binary files carry their own definitions
+class LogTemplates {
+    private static final List<String> templates = new CopyOnWriteArrayList<>();
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    public static synchronized int register(String template) {
+        Integer existing = ids.get(template);
+        if (existing != null) return existing;
+        int id = templates.size();
+        templates.add(template);
+        ids.put(template, id);
+        return id;
+    }
+
+    public static String get(int id) { return templates.get(id); }
+
+    public static String render(String template, Object[] args) {
+        StringBuilder sb = new StringBuilder(template.length() + 16 * args.length);
+        int argIndex = 0, from = 0, at;
+        while ((at = template.indexOf("{}", from)) >= 0) {
+            sb.append(template, from, at);
+            sb.append(argIndex < args.length ? args[argIndex++] : "{}");
+            from = at + 2;
+        }
+        return sb.append(template, from, template.length()).toString();
+    }
+}
+
+// Record layout: [int length][int templateId][long epochMillis][long threadId][byte level][byte argc][args...]
+// each arg is a type tag followed by its raw big-endian bytes (strings as int length + UTF-8).
+// A definition record (id DEFINITION_TEMPLATE_ID, args: templateId, template) binds an id for
+// the rest of the file
+class BinaryLogCodec {
+    static final int TEXT_TEMPLATE_ID = -1;
+    static final int DEFINITION_TEMPLATE_ID = -2;
+    static final int MAX_ARGS = Byte.MAX_VALUE;
+    private static final byte NULL = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4, STRING = 5;
+    private static final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    // argc is a single byte, so a call with more args than MAX_ARGS is refused rather than corrupting the record
+    public static byte[] encode(int templateId, LogLevel level, Object[] args) {
+        if (args.length > MAX_ARGS) throw new IllegalArgumentException(args.length + " args, at most " + MAX_ARGS + " per record");
+        ByteBuffer buf = scratch.get();
+        while (true) {
+            try {
+                buf.clear();
+                buf.position(4);
+                buf.putInt(templateId);
+                buf.putLong(System.currentTimeMillis());
+                buf.putLong(Thread.currentThread().threadId());
+                buf.put((byte) level.ordinal());
+                buf.put((byte) args.length);
+                for (Object arg : args) putArg(buf, arg);
+                buf.putInt(0, buf.position() - 4);
+                return Arrays.copyOf(buf.array(), buf.position());
+            } catch (BufferOverflowException e) {
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+                scratch.set(buf);
+            }
+        }
+    }
+
+    public static byte[] encodeText(LogLevel level, String message) {
+        return encode(TEXT_TEMPLATE_ID, level, new Object[] { message });
+    }
+
+    static byte[] encodeDefinition(int templateId, String template) {
+        return encode(DEFINITION_TEMPLATE_ID, LogLevel.INFO, new Object[] { templateId, template });
+    }
+
+    static int templateIdOf(byte[] record) {
+        return ByteBuffer.wrap(record).getInt(4);
+    }
+
+    private static void putArg(ByteBuffer buf, Object arg) {
+        if (arg == null) {
+            buf.put(NULL);
+        } else if (arg instanceof Integer i) {
+            buf.put(INT).putInt(i);
+        } else if (arg instanceof Long l) {
+            buf.put(LONG).putLong(l);
+        } else if (arg instanceof Double d) {
+            buf.put(DOUBLE).putDouble(d);
+        } else if (arg instanceof Boolean b) {
+            buf.put(BOOLEAN).put((byte) (b ? 1 : 0));
+        } else {
+            byte[] utf8 = arg.toString().getBytes(StandardCharsets.UTF_8);
+            buf.put(STRING).putInt(utf8.length).put(utf8);
+        }
+    }
+
+    // Reads one record body (after the length prefix) back into text. Definition records update
+    // the file's dictionary and return null
+    public static String decode(ByteBuffer body, Map<Integer, String> dictionary) {
+        int templateId = body.getInt();
+        long epochMillis = body.getLong();
+        long threadId = body.getLong();
+        LogLevel level = LogLevel.values()[body.get()];
+        Object[] args = new Object[body.get()];
+        for (int i = 0; i < args.length; i++) args[i] = getArg(body);
+        if (templateId == DEFINITION_TEMPLATE_ID) {
+            dictionary.put((Integer) args[0], (String) args[1]);
+            return null;
+        }
+        String message = templateId == TEXT_TEMPLATE_ID
+                ? String.valueOf(args[0])
+                : LogTemplates.render(dictionary.getOrDefault(templateId, "<unknown template " + templateId + ">"), args);
+        return "[" + new Date(epochMillis) + "][thread-" + threadId + "][" + level + "] " + message;
+    }
+
+    private static Object getArg(ByteBuffer body) {
+        byte tag = body.get();
+        return switch (tag) {
+            case NULL -> null;
+            case INT -> body.getInt();
+            case LONG -> body.getLong();
+            case DOUBLE -> body.getDouble();
+            case BOOLEAN -> body.get() != 0;
+            case STRING -> {
+                byte[] utf8 = new byte[body.getInt()];
+                body.get(utf8);
+                yield new String(utf8, StandardCharsets.UTF_8);
+            }
+            default -> throw new IllegalStateException("Unknown arg tag " + tag);
+        };
+    }
+}
+
+// Offline decoder: java BinaryLogDecoder <log files...> (rolled .gz files are supported).
+// Every file is self-describing, so files from different runs can be decoded together
+class BinaryLogDecoder {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BinaryLogDecoder <log file>...");
+            System.exit(1);
+        }
+        for (String file : args) decodeFile(Paths.get(file), System.out);
+    }
+
+    static void decodeFile(Path file, PrintStream out) throws IOException {
+        Map<Integer, String> dictionary = new HashMap<>();
+        InputStream raw = Files.newInputStream(file);
+        if (file.toString().endsWith(".gz")) raw = new GZIPInputStream(raw);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                String line = BinaryLogCodec.decode(ByteBuffer.wrap(body), dictionary);
+                if (line != null) out.println(line);
+            }
+        }
+    }
+}
+
+// Filters run after the level check and before formatting; they must be lock-free
+interface LogFilter {
+    boolean accept(Logger logger, LogLevel level, String message);
+}
+
+// Token bucket per level as a GCRA: one CAS on a "theoretical arrival time" per event
+class RateLimitFilter implements LogFilter {
+    private final long nanosPerEvent;
+    private final long burstNanos;
+    private final AtomicLongArray arrivalTimes = new AtomicLongArray(LogLevel.values().length);
+    private final LongAdder denied = new LongAdder();
+
+    public RateLimitFilter(double eventsPerSecond, int burst) {
+        this.nanosPerEvent = (long) (1_000_000_000L / eventsPerSecond);
+        this.burstNanos = nanosPerEvent * burst;
+        long now = System.nanoTime();
+        for (int i = 0; i < arrivalTimes.length(); i++) arrivalTimes.set(i, now);
+    }
+
+    public boolean accept(Logger logger, LogLevel level, String message) {
+        int slot = level.ordinal();
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = arrivalTimes.get(slot);
+            long next = (arrival - now < 0 ? now : arrival) + nanosPerEvent;
+            if (next - now > burstNanos) {
+                denied.increment();
+                return false;
+            }
+            if (arrivalTimes.compareAndSet(slot, arrival, next)) return true;
+        }
+    }
+
+    public long getDeniedCount() { return denied.sum(); }
+}
+
+// Probabilistic sampling; levels without a configured rate are always kept
+class SamplingFilter implements LogFilter {
+    private final double[] rates = new double[LogLevel.values().length];
+
+    public SamplingFilter(double debugRate, double infoRate) {
+        Arrays.fill(rates, 1.0);
+        rates[LogLevel.DEBUG.ordinal()] = debugRate;
+        rates[LogLevel.INFO.ordinal()] = infoRate;
+    }
+
+    public boolean accept(Logger logger, LogLevel level, String message) {
+        double rate = rates[level.ordinal()];
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
+
+// Suppresses repeats of the same level + message within a window, whichever threads they come
+// from. The first occurrence passes and opens the window; repeats are counted. Once the window has
+// closed, the next call to the filter (any message) logs a "repeated N times" summary, so a storm
+// that ends on the repeated line is still reported. Template-based calls are keyed by their
+// rendered message. At most maxKeys messages are tracked; past that, new ones pass unsuppressed
+// until the sweep frees expired windows
+class DuplicateSuppressionFilter implements LogFilter {
+    private record Key(LogLevel level, String message) {}
+
+    private static class Window {
+        final Logger logger;
+        final long openedAtNanos;
+        // Sealed with MIN_VALUE once reported, so late increments are never lost silently
+        final AtomicInteger suppressed = new AtomicInteger();
+
+        Window(Logger logger, long openedAtNanos) {
+            this.logger = logger;
+            this.openedAtNanos = openedAtNanos;
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Window> windows = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final int maxKeys;
+    private final AtomicLong nextSweepNanos;
+
+    public DuplicateSuppressionFilter() {
+        this(10_000);
+    }
+
+    public DuplicateSuppressionFilter(long windowMillis) {
+        this(windowMillis, 10_000);
+    }
+
+    public DuplicateSuppressionFilter(long windowMillis, int maxKeys) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxKeys = maxKeys;
+        this.nextSweepNanos = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    public boolean accept(Logger logger, LogLevel level, String message) {
+        long now = System.nanoTime();
+        long sweepAt = nextSweepNanos.get();
+        if (now - sweepAt >= 0 && nextSweepNanos.compareAndSet(sweepAt, now + windowNanos)) sweep(now);
+
+        Key key = new Key(level, message);
+        while (true) {
+            Window current = windows.get(key);
+            if (current != null && now - current.openedAtNanos < windowNanos
+                    && current.suppressed.incrementAndGet() > 0) {
+                return false;
+            }
+            if (current == null && windows.size() >= maxKeys) return true;
+            Window fresh = new Window(logger, now);
+            boolean opened = current == null ? windows.putIfAbsent(key, fresh) == null : windows.replace(key, current, fresh);
+            if (opened) {
+                if (current != null) report(key, current);
+                return true;
+            }
+        }
+    }
+
+    private void sweep(long now) {
+        windows.forEach((key, window) -> {
+            if (now - window.openedAtNanos >= windowNanos && windows.remove(key, window)) report(key, window);
+        });
+    }
+
+    private static void report(Key key, Window window) {
+        int count = window.suppressed.getAndSet(Integer.MIN_VALUE);
+        if (count > 0) window.logger.emit(key.level(), "Previous message repeated " + count + " times: " + key.message());
     }
 }
 
 class Logger {
-    private String name;
-    private LogLevel level;
-    private List<Appender> appenders;
+    private final String name;
+    // Effective level ordinal and appenders are pushed down by LoggerFactory on reconfiguration,
+    // so a disabled statement costs a single volatile read
+    private volatile int effectiveLevel;
+    private volatile List<Appender> appenders;
+    private volatile LogFilter[] filters = new LogFilter[0];
 
     public Logger(String name, LogLevel level, List<Appender> appenders) {
         this.name = name;
-        this.level = level;
+        this.effectiveLevel = level.ordinal();
         this.appenders = appenders;
     }
 
+    public String getName() { return name; }
+
+    public boolean isEnabled(LogLevel logLevel) { return logLevel.ordinal() >= effectiveLevel; }
+    public boolean isDebugEnabled() { return effectiveLevel <= 0; }
+    public boolean isInfoEnabled() { return effectiveLevel <= 1; }
+    public boolean isWarnEnabled() { return effectiveLevel <= 2; }
+
+    void reconfigure(LogLevel level, List<Appender> appenders) {
+        this.appenders = appenders;
+        this.effectiveLevel = level.ordinal();
+    }
+
+    public synchronized void addFilter(LogFilter filter) {
+        LogFilter[] updated = Arrays.copyOf(filters, filters.length + 1);
+        updated[filters.length] = filter;
+        filters = updated;
+    }
+
     public void log(LogLevel logLevel, String message) {
-        if (logLevel.ordinal() >= level.ordinal()) {
-            String formatted = format(logLevel, message);
-            for (Appender appender : appenders) appender.append(formatted);
+        if (logLevel.ordinal() < effectiveLevel || !passesFilters(logLevel, message)) return;
+        emit(logLevel, message);
+    }
+
+    // Writes straight to the appenders, bypassing level and filters (used for filter summaries).
+    // Binary appenders get the raw message with its level; they record time and thread themselves
+    void emit(LogLevel logLevel, String message) {
+        byte[] record = null;
+        String formatted = null;
+        for (Appender appender : appenders) {
+            if (appender instanceof BinaryAppender binary) {
+                if (record == null) record = BinaryLogCodec.encodeText(logLevel, message);
+                binary.appendBinary(record);
+            } else {
+                if (formatted == null) formatted = format(logLevel, message);
+                appender.append(formatted);
+            }
+        }
+    }
+
+    private boolean passesFilters(LogLevel logLevel, String message) {
+        for (LogFilter filter : filters) {
+            if (!filter.accept(this, logLevel, message)) return false;
+        }
+        return true;
+    }
+
+    // Template-based logging: binary appenders receive the template id and raw args,
+    // text appenders get the rendered message. Templates come from LogTemplates.register.
+    // Filters see the rendered message, so it is only rendered up front when there are any
+    public void log(LogLevel logLevel, int templateId, Object... args) {
+        if (logLevel.ordinal() < effectiveLevel) return;
+        String message = null;
+        if (filters.length > 0) {
+            message = LogTemplates.render(LogTemplates.get(templateId), args);
+            if (!passesFilters(logLevel, message)) return;
+        }
+        byte[] record = null;
+        String formatted = null;
+        for (Appender appender : appenders) {
+            if (appender instanceof BinaryAppender binary) {
+                if (record == null) record = BinaryLogCodec.encode(templateId, logLevel, args);
+                binary.appendBinary(record);
+            } else {
+                if (message == null) message = LogTemplates.render(LogTemplates.get(templateId), args);
+                if (formatted == null) formatted = format(logLevel, message);
+                appender.append(formatted);
+            }
         }
     }
 
@@ -40,12 +667,58 @@ class Logger {
     }
 }
 
+// Hierarchical configuration: "com.shop.orders" inherits level and appenders from "com.shop",
+// then from the root (""). Changes at runtime are pushed to every affected logger
 class LoggerFactory {
+    private static final String ROOT = "";
     private static final Map<String, Logger> loggers = new ConcurrentHashMap<>();
-    private static final List<Appender> defaultAppenders = List.of(new ConsoleAppender());
+    private static final Map<String, LogLevel> configuredLevels = new ConcurrentHashMap<>(Map.of(ROOT, LogLevel.INFO));
+    private static final Map<String, List<Appender>> configuredAppenders =
+            new ConcurrentHashMap<>(Map.of(ROOT, List.of(new ConsoleAppender())));
 
     public static Logger getLogger(String name) {
-        return loggers.computeIfAbsent(name, k -> new Logger(k, LogLevel.INFO, defaultAppenders));
+        Logger logger = loggers.get(name);
+        if (logger != null) return logger;
+        synchronized (LoggerFactory.class) {
+            return loggers.computeIfAbsent(name, k -> new Logger(k, resolve(configuredLevels, k), resolve(configuredAppenders, k)));
+        }
+    }
+
+    // A null level clears the override so the logger inherits from its parent again
+    public static synchronized void setLevel(String name, LogLevel level) {
+        configure(configuredLevels, name, level);
+    }
+
+    public static synchronized void setAppenders(String name, List<Appender> appenders) {
+        configure(configuredAppenders, name, appenders == null ? null : List.copyOf(appenders));
     }
-}
 
+    private static <T> void configure(Map<String, T> config, String name, T value) {
+        if (value != null) {
+            config.put(name, value);
+        } else if (!ROOT.equals(name)) {
+            config.remove(name);
+        }
+        for (Logger logger : loggers.values()) {
+            if (isSelfOrDescendant(logger.getName(), name)) {
+                logger.reconfigure(resolve(configuredLevels, logger.getName()), resolve(configuredAppenders, logger.getName()));
+            }
+        }
+    }
+
+    private static boolean isSelfOrDescendant(String loggerName, String ancestor) {
+        return ancestor.isEmpty() || loggerName.equals(ancestor) || loggerName.startsWith(ancestor + ".");
+    }
+
+    private static <T> T resolve(Map<String, T> config, String name) {
+        for (String current = name; ; current = parent(current)) {
+            T value = config.get(current);
+            if (value != null) return value;
+        }
+    }
+
+    private static String parent(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? ROOT : name.substring(0, dot);
+    }
+}
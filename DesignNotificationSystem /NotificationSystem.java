@@ -1,59 +1,1025 @@
 enum ChannelType { EMAIL, SMS, PUSH }
 
+// Weight is the lane's share of a channel's sends while every lane is backlogged
+enum Priority {
+    CRITICAL(8), HIGH(4), NORMAL(2), LOW(1);
+
+    final int weight;
+
+    Priority(int weight) { this.weight = weight; }
+}
+
 class Notification {
     private String userId;
     private String message;
     private ChannelType channelType;
+    private Priority priority = Priority.NORMAL;
+    // Stable across retries and restarts so the same notification is never delivered twice
+    private String idempotencyKey;
+}
+
+// Per-notification outcome of a batch send; failure is null when delivered
+record SendResult(Throwable failure) {
+    static final SendResult DELIVERED = new SendResult(null);
+
+    boolean delivered() { return failure == null; }
 }
 
 // Strategy for sending notifications
-interface NotificationChannel {
+interface NotificationChannel extends AutoCloseable {
     void send(Notification notification);
+
+    // One result per notification, in batch order. Providers with a bulk API override this
+    // to make a single round trip; the default just sends one at a time
+    default List<SendResult> sendBatch(List<Notification> batch) {
+        List<SendResult> results = new ArrayList<>(batch.size());
+        for (Notification n : batch) {
+            try {
+                send(n);
+                results.add(SendResult.DELIVERED);
+            } catch (RuntimeException e) {
+                results.add(new SendResult(e));
+            }
+        }
+        return results;
+    }
+
+    // Releases the channel's provider connections
+    default void close() {}
+}
+
+// A client session with a provider
+interface ProviderConnection {
+    // Cheap liveness probe; also stops the provider timing out an idle session
+    boolean ping();
+
+    void close();
+}
+
+class SmtpConnection implements ProviderConnection {
+    public boolean ping() { /* NOOP */ return true; }
+    public void close() { /* QUIT */ }
+}
+
+class TwilioConnection implements ProviderConnection {
+    public boolean ping() { /* HEAD on the account resource over the kept-alive HTTP client */ return true; }
+    public void close() { /* release the HTTP client */ }
+}
+
+class FcmConnection implements ProviderConnection {
+    public boolean ping() { /* HTTP/2 PING frame */ return true; }
+    public void close() { /* GOAWAY */ }
+}
+
+// Bounded pool of provider connections. Borrowing is LIFO so the warmest connection is reused;
+// idle ones stay open for keepAlive, and a background health check pings them and evicts dead or
+// expired ones, so a broken session is replaced off the send path
+class ConnectionPool<C extends ProviderConnection> implements AutoCloseable {
+    private static final ScheduledExecutorService HEALTH_CHECKS = Executors.newSingleThreadScheduledExecutor(
+            task -> Thread.ofPlatform().daemon().name("provider-health-check").unstarted(task));
+
+    private record Idle<C>(C connection, long idleSinceNanos) {}
+
+    private final String name;
+    private final Supplier<C> connector;
+    // One permit per connection that may be open, idle or borrowed
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<Idle<C>> idle = new LinkedBlockingDeque<>();
+    private final long keepAliveNanos;
+    private final long acquireTimeoutNanos;
+    private final ScheduledFuture<?> healthCheck;
+    private volatile boolean closed;
+
+    ConnectionPool(String name, Supplier<C> connector, int maxSize, Duration keepAlive,
+                   Duration healthCheckInterval, Duration acquireTimeout) {
+        this.name = name;
+        this.connector = connector;
+        this.permits = new Semaphore(maxSize);
+        this.keepAliveNanos = keepAlive.toNanos();
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        long interval = healthCheckInterval.toNanos();
+        this.healthCheck = HEALTH_CHECKS.scheduleWithFixedDelay(this::checkIdle, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    // A connection that throws is assumed broken and closed rather than returned to the pool
+    <T> T call(Function<C, T> work) {
+        C connection = borrow();
+        boolean broken = true;
+        try {
+            T result = work.apply(connection);
+            broken = false;
+            return result;
+        } finally {
+            release(connection, broken);
+        }
+    }
+
+    void run(Consumer<C> work) {
+        call(connection -> {
+            work.accept(connection);
+            return null;
+        });
+    }
+
+    public void close() {
+        closed = true;
+        healthCheck.cancel(false);
+        for (Idle<C> entry; (entry = idle.pollFirst()) != null; ) entry.connection().close();
+    }
+
+    private C borrow() {
+        if (closed) throw new IllegalStateException(name + " pool is closed");
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException(name + " pool exhausted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(name + " pool wait interrupted", e);
+        }
+        try {
+            Idle<C> entry = idle.pollFirst();
+            return entry != null ? entry.connection() : connector.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(C connection, boolean broken) {
+        if (broken || closed) connection.close();
+        else idle.addFirst(new Idle<>(connection, System.nanoTime()));
+        permits.release();
+    }
+
+    // Holds a permit while a connection is out for probing so the pool never exceeds maxSize;
+    // if none is free every connection is busy anyway
+    private void checkIdle() {
+        long now = System.nanoTime();
+        for (Idle<C> entry : new ArrayList<>(idle)) {
+            if (!permits.tryAcquire()) return;
+            try {
+                if (!idle.removeFirstOccurrence(entry)) continue;
+                boolean alive;
+                try {
+                    alive = now - entry.idleSinceNanos() < keepAliveNanos && entry.connection().ping();
+                } catch (RuntimeException e) {
+                    alive = false;
+                }
+                if (alive && !closed) idle.addLast(entry);
+                else entry.connection().close();
+            } finally {
+                permits.release();
+            }
+        }
+    }
 }
 
 class EmailChannel implements NotificationChannel {
-    public void send(Notification n) { /* SMTP logic */ }
+    private final ConnectionPool<SmtpConnection> pool = new ConnectionPool<>("smtp", SmtpConnection::new, 8,
+            Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(2));
+
+    public void send(Notification n) { pool.run(smtp -> { /* SMTP logic */ }); }
+
+    public List<SendResult> sendBatch(List<Notification> batch) {
+        return pool.call(smtp -> {
+            /* one SMTP session, pipelined MAIL/RCPT/DATA per message, per-recipient reply codes */
+            return Collections.nCopies(batch.size(), SendResult.DELIVERED);
+        });
+    }
+
+    public void close() { pool.close(); }
 }
 
 class SMSChannel implements NotificationChannel {
-    public void send(Notification n) { /* Twilio logic */ }
+    private final ConnectionPool<TwilioConnection> pool = new ConnectionPool<>("twilio", TwilioConnection::new, 4,
+            Duration.ofMinutes(2), Duration.ofSeconds(30), Duration.ofSeconds(2));
+
+    public void send(Notification n) { pool.run(twilio -> { /* Twilio logic */ }); }
+
+    public void close() { pool.close(); }
 }
 
 class PushChannel implements NotificationChannel {
-    public void send(Notification n) { /* FCM logic */ }
+    private final ConnectionPool<FcmConnection> pool = new ConnectionPool<>("fcm", FcmConnection::new, 4,
+            Duration.ofMinutes(10), Duration.ofSeconds(30), Duration.ofSeconds(2));
+
+    public void send(Notification n) { pool.run(fcm -> { /* FCM logic */ }); }
+
+    public List<SendResult> sendBatch(List<Notification> batch) {
+        return pool.call(fcm -> {
+            /* FCM multicast / APNs HTTP/2 stream per message, per-token status in the response */
+            return Collections.nCopies(batch.size(), SendResult.DELIVERED);
+        });
+    }
+
+    public void close() { pool.close(); }
+}
+
+// Stand-in provider for running the service without real credentials. Keeps an in-memory inbox,
+// ignores repeats of an idempotency key the way providers that accept one do, and can fail a
+// fraction of sends to exercise retries
+class LocalNotificationChannel implements NotificationChannel {
+    private final Map<String, Notification> inbox = new ConcurrentHashMap<>();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final double failureRate;
+
+    LocalNotificationChannel(double failureRate) { this.failureRate = failureRate; }
+
+    public void send(Notification n) {
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IllegalStateException("simulated provider failure for " + n.getIdempotencyKey());
+        }
+        if (inbox.putIfAbsent(n.getIdempotencyKey(), n) != null) duplicates.incrementAndGet();
+    }
+
+    Collection<Notification> inbox() { return inbox.values(); }
+
+    int duplicatesIgnored() { return duplicates.get(); }
 }
 
-// Factory to create channel
+// Factory handing out one long-lived channel per type: each owns its provider connection pool,
+// so building a channel per send would mean a new connection per send
 class NotificationFactory {
+    private static final Map<ChannelType, NotificationChannel> CHANNELS = new ConcurrentHashMap<>();
+
     public static NotificationChannel getChannel(ChannelType type) {
-        return switch (type) {
+        return CHANNELS.computeIfAbsent(type, t -> switch (t) {
             case EMAIL -> new EmailChannel();
             case SMS -> new SMSChannel();
             case PUSH -> new PushChannel();
-        };
+        });
+    }
+
+    public static void closeAll() {
+        CHANNELS.values().forEach(NotificationChannel::close);
+        CHANNELS.clear();
     }
 }
 
-// Async service layer
+class CircuitOpenException extends RuntimeException {
+    private final long retryAfterNanos;
+
+    CircuitOpenException(String message, long retryAfterNanos) {
+        super(message);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    long retryAfterNanos() { return retryAfterNanos; }
+}
+
+// Closed until failureThreshold calls fail in a row, then open: calls are refused for
+// openDuration. After that one trial call is let through (half-open); it closes the circuit or
+// opens it again. A trial that never reports back is replaced after another openDuration
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private record Snapshot(State state, int failures, long sinceNanos) {}
+
+    private static final Snapshot HEALTHY = new Snapshot(State.CLOSED, 0, 0);
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(HEALTHY);
+
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    // 0 if the call may proceed, otherwise nanos until the next trial is allowed
+    long tryAcquire() {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.state() == State.CLOSED) return 0;
+            long remaining = current.sinceNanos() + openNanos - System.nanoTime();
+            if (remaining > 0) return remaining;
+            if (snapshot.compareAndSet(current, new Snapshot(State.HALF_OPEN, 0, System.nanoTime()))) return 0;
+        }
+    }
+
+    void onSuccess() {
+        while (true) {
+            Snapshot current = snapshot.get();
+            // A call that started before the circuit opened doesn't cut the cool-down short
+            if (current == HEALTHY || current.state() == State.OPEN) return;
+            if (snapshot.compareAndSet(current, HEALTHY)) return;
+        }
+    }
+
+    void onFailure() {
+        while (true) {
+            Snapshot current = snapshot.get();
+            // A call that started before the circuit opened doesn't extend the open period
+            if (current.state() == State.OPEN) return;
+            Snapshot next = current.state() == State.HALF_OPEN || current.failures() + 1 >= failureThreshold
+                    ? new Snapshot(State.OPEN, 0, System.nanoTime())
+                    : new Snapshot(State.CLOSED, current.failures() + 1, 0);
+            if (snapshot.compareAndSet(current, next)) return;
+        }
+    }
+
+    State state() { return snapshot.get().state(); }
+}
+
+record PendingNotification(Notification notification, CompletableFuture<Void> result) {}
+
+// Not thread-safe: only touched under the owning ChannelDispatcher's lock
+class TokenBucket {
+    private final double permitsPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    TokenBucket(double permitsPerSecond, double burst) {
+        this.permitsPerNano = permitsPerSecond / 1e9;
+        this.capacity = burst;
+        this.tokens = burst;
+    }
+
+    // 0 if a permit was taken, otherwise nanos until one will be available
+    long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+    }
+}
+
+// One per channel: a bounded lane per priority, drained by smooth weighted round robin so LOW
+// still gets its share under load but can never hold up CRITICAL, and paced by the channel's bucket
+class ChannelDispatcher {
+    private final ArrayDeque<PendingNotification>[] lanes;
+    private final int[] currentWeight = new int[Priority.values().length];
+    private final int laneCapacity;
+    private final TokenBucket rateLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private int queued;
+    private boolean closed;
+
+    @SuppressWarnings("unchecked")
+    ChannelDispatcher(int laneCapacity, TokenBucket rateLimit) {
+        this.laneCapacity = laneCapacity;
+        this.rateLimit = rateLimit;
+        this.lanes = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < lanes.length; i++) lanes[i] = new ArrayDeque<>();
+    }
+
+    boolean offer(PendingNotification pending) {
+        lock.lock();
+        try {
+            ArrayDeque<PendingNotification> lane = lanes[pending.notification().getPriority().ordinal()];
+            if (closed || lane.size() >= laneCapacity) return false;
+            lane.addLast(pending);
+            queued++;
+            ready.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks for the first notification, then keeps collecting until the batch is full or
+    // linger has passed since the first one arrived. Every notification still takes a permit.
+    // Null once closed and drained
+    List<PendingNotification> takeBatch(int maxBatchSize, long lingerNanos) throws InterruptedException {
+        List<PendingNotification> batch = new ArrayList<>(maxBatchSize);
+        long deadline = 0;
+        lock.lock();
+        try {
+            while (batch.size() < maxBatchSize) {
+                long waitNanos = queued == 0 ? Long.MAX_VALUE : rateLimit.tryAcquire();
+                if (waitNanos == 0) {
+                    batch.add(pollWeighted());
+                    if (batch.size() == 1) deadline = System.nanoTime() + lingerNanos;
+                    continue;
+                }
+                if (!batch.isEmpty()) {
+                    long lingerLeft = deadline - System.nanoTime();
+                    if (closed || lingerLeft <= 0) break;
+                    waitNanos = Math.min(waitNanos, lingerLeft);
+                } else if (queued == 0 && closed) {
+                    return null;
+                }
+                if (waitNanos == Long.MAX_VALUE) ready.await();
+                else ready.awaitNanos(waitNanos);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PendingNotification pollWeighted() {
+        int best = -1;
+        int total = 0;
+        for (Priority priority : Priority.values()) {
+            int i = priority.ordinal();
+            if (lanes[i].isEmpty()) continue;
+            currentWeight[i] += priority.weight;
+            total += priority.weight;
+            if (best < 0 || currentWeight[i] > currentWeight[best]) best = i;
+        }
+        currentWeight[best] -= total;
+        queued--;
+        return lanes[best].pollFirst();
+    }
+}
+
+// Exponential backoff with equal jitter: half the capped delay is fixed, half random, so retries
+// from a provider outage spread out instead of arriving in waves
+record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+    long backoffNanos(int failedAttempts) {
+        long capped = Math.min(maxDelay.toNanos(), baseDelay.toNanos() << Math.max(0, Math.min(failedAttempts - 1, 30)));
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+}
+
+// Hashed timing wheel: scheduling is O(1) whatever the number of pending retries, at the cost of
+// firing up to about a tick late. Tasks run on the wheel thread, so they must only hand work off
+class TimingWheel implements AutoCloseable {
+    private static final class Timeout {
+        final Runnable task;
+        final long deadline;
+        long rounds;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(Duration tick, int wheelSize) {
+        this.tickNanos = tick.toNanos();
+        this.buckets = new ArrayDeque[Integer.highestOneBit(wheelSize - 1) << 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new ArrayDeque<>();
+        this.worker = Thread.ofPlatform().daemon().name("notify-retry-wheel").start(this::run);
+    }
+
+    void schedule(Runnable task, long delayNanos) {
+        incoming.add(new Timeout(task, System.nanoTime() + delayNanos));
+    }
+
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        int mask = buckets.length - 1;
+        while (running) {
+            long sleepNanos = startNanos + tick * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+            for (Timeout timeout; (timeout = incoming.poll()) != null; ) {
+                long dueTick = Math.max(tick, (timeout.deadline - startNanos + tickNanos - 1) / tickNanos);
+                timeout.rounds = (dueTick - tick) / buckets.length;
+                buckets[(int) (dueTick & mask)].add(timeout);
+            }
+            ArrayDeque<Timeout> bucket = buckets[(int) (tick & mask)];
+            for (int i = bucket.size(); i > 0; i--) {
+                Timeout timeout = bucket.poll();
+                if (timeout.rounds-- > 0) {
+                    bucket.add(timeout);
+                    continue;
+                }
+                // One bad task mustn't stop every other retry and the pruning from ever firing
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Timing wheel task failed: " + e);
+                }
+            }
+            tick++;
+        }
+    }
+}
+
+record Settlement(boolean delivered, long atMillis) {}
+
+// Append-only write-ahead log of notifications that haven't been acknowledged yet. Appends are
+// group-committed: one writer thread drains everything queued, writes it and fsyncs once.
+// Records are [length][crc32][type, millis, key, ...]; a torn tail from a crash fails the CRC and
+// is cut off on open. Opening compacts the file down to what is still pending plus the settled
+// keys inside the idempotency window, and the writer does the same while running whenever the
+// file has doubled since the last compaction (and is past compactAtBytes): it keeps a mirror of
+// the live state from the records it writes, and nothing else touches the file
+class NotificationOutbox implements Closeable {
+    enum RecordType { ENQUEUED, DELIVERED, ABANDONED, REJECTED }
+
+    private static final long DEFAULT_COMPACT_AT_BYTES = 64L << 20;
+
+    private record PendingWrite(RecordType type, long atMillis, Notification n, ByteBuffer record,
+                                CompletableFuture<Void> durable) {}
+
+    private final Path file;
+    private final BlockingQueue<PendingWrite> writes;
+    private final Duration idempotencyWindow;
+    private final long compactAtBytes;
+    private final List<Notification> recoveredPending;
+    private final Map<String, Settlement> recoveredSettled;
+    // Owned by the writer thread
+    private FileChannel channel;
+    private final Map<String, Notification> livePending;
+    private final Map<String, Settlement> liveSettled;
+    private long compactedBytes;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private NotificationOutbox(Path file, FileChannel channel, int queueCapacity, Duration idempotencyWindow,
+                               long compactAtBytes, Map<String, Notification> pending, Map<String, Settlement> settled)
+            throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.writes = new ArrayBlockingQueue<>(queueCapacity);
+        this.idempotencyWindow = idempotencyWindow;
+        this.compactAtBytes = compactAtBytes;
+        this.recoveredPending = new ArrayList<>(pending.values());
+        this.recoveredSettled = new HashMap<>(settled);
+        this.livePending = pending;
+        this.liveSettled = settled;
+        this.compactedBytes = channel.size();
+        this.writer = Thread.ofPlatform().daemon().name("notify-outbox-writer").start(this::writeLoop);
+    }
+
+    static NotificationOutbox open(Path file, int queueCapacity, Duration idempotencyWindow) throws IOException {
+        return open(file, queueCapacity, idempotencyWindow, DEFAULT_COMPACT_AT_BYTES);
+    }
+
+    static NotificationOutbox open(Path file, int queueCapacity, Duration idempotencyWindow, long compactAtBytes)
+            throws IOException {
+        Map<String, Notification> pending = new LinkedHashMap<>();
+        Map<String, Settlement> settled = new HashMap<>();
+        if (Files.exists(file)) replay(file, pending, settled);
+        FileChannel channel = compact(file, pending, settled, idempotencyWindow);
+        return new NotificationOutbox(file, channel, queueCapacity, idempotencyWindow, compactAtBytes, pending, settled);
+    }
+
+    // Drops settled keys past the window, writes the rest to a side file and swaps it in. Returns
+    // an append channel on the new file, opened before the swap so a failed move leaves it unused
+    private static FileChannel compact(Path file, Map<String, Notification> pending, Map<String, Settlement> settled,
+                                       Duration idempotencyWindow) throws IOException {
+        long cutoff = System.currentTimeMillis() - idempotencyWindow.toMillis();
+        settled.values().removeIf(settlement -> settlement.atMillis() < cutoff);
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Notification n : pending.values()) {
+                writeFully(out, encode(RecordType.ENQUEUED, System.currentTimeMillis(), n.getIdempotencyKey(), n));
+            }
+            for (Map.Entry<String, Settlement> entry : settled.entrySet()) {
+                RecordType type = entry.getValue().delivered() ? RecordType.DELIVERED : RecordType.ABANDONED;
+                writeFully(out, encode(type, entry.getValue().atMillis(), entry.getKey(), null));
+            }
+            out.force(true);
+        }
+        FileChannel channel = FileChannel.open(compacted, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    // Completes once the record is on disk; fails if the writer is saturated or closed
+    CompletableFuture<Void> append(RecordType type, Notification n) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (closed) {
+            durable.completeExceptionally(new IllegalStateException("outbox is closed"));
+            return durable;
+        }
+        try {
+            long atMillis = System.currentTimeMillis();
+            ByteBuffer record = encode(type, atMillis, n.getIdempotencyKey(), type == RecordType.ENQUEUED ? n : null);
+            if (!writes.offer(new PendingWrite(type, atMillis, n, record, durable))) {
+                durable.completeExceptionally(new RejectedExecutionException("outbox write queue is full"));
+            }
+        } catch (IOException e) {
+            durable.completeExceptionally(e);
+        }
+        return durable;
+    }
+
+    List<Notification> recoveredPending() { return recoveredPending; }
+
+    Map<String, Settlement> recoveredSettled() { return recoveredSettled; }
+
+    Duration idempotencyWindow() { return idempotencyWindow; }
+
+    // Flushes everything already queued before closing the file
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (PendingWrite late; (late = writes.poll()) != null; ) {
+            late.durable().completeExceptionally(new IllegalStateException("outbox is closed"));
+        }
+        channel.close();
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> group = new ArrayList<>();
+        while (!closed || !writes.isEmpty()) {
+            try {
+                PendingWrite first = writes.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            writes.drainTo(group);
+            try {
+                for (PendingWrite write : group) writeFully(channel, write.record());
+                channel.force(false);
+                for (PendingWrite write : group) {
+                    apply(write.type(), write.atMillis(), write.n().getIdempotencyKey(), write.n(), livePending, liveSettled);
+                }
+                group.forEach(write -> write.durable().complete(null));
+            } catch (IOException e) {
+                group.forEach(write -> write.durable().completeExceptionally(e));
+            }
+            group.clear();
+            maybeCompact();
+        }
+    }
+
+    // A failed compaction leaves the current file in use; the next try waits for it to double again
+    private void maybeCompact() {
+        try {
+            long size = channel.size();
+            if (size < Math.max(compactAtBytes, 2 * compactedBytes)) return;
+            FileChannel compacted;
+            try {
+                compacted = compact(file, livePending, liveSettled, idempotencyWindow);
+            } catch (IOException e) {
+                compactedBytes = size;
+                System.err.println("Outbox compaction failed, still appending to " + file + ": " + e);
+                return;
+            }
+            FileChannel old = channel;
+            channel = compacted;
+            compactedBytes = compacted.size();
+            old.close();
+        } catch (IOException e) {
+            System.err.println("Outbox compaction failed for " + file + ": " + e);
+        }
+    }
+
+    private static ByteBuffer encode(RecordType type, long atMillis, String key, Notification n) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(type.ordinal());
+        payload.writeLong(atMillis);
+        payload.writeUTF(key);
+        if (n != null) {
+            payload.writeUTF(n.getUserId());
+            payload.writeByte(n.getChannelType().ordinal());
+            payload.writeByte(n.getPriority().ordinal());
+            payload.writeUTF(n.getMessage());
+        }
+        byte[] body = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(8 + body.length);
+        record.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        return record;
+    }
+
+    // Last record per key wins; REJECTED means the caller was refused, so it's neither pending nor settled
+    private static void replay(Path file, Map<String, Notification> pending, Map<String, Settlement> settled) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0 || length > 1 << 20) return;
+                    body = in.readNBytes(length);
+                    if (body.length < length) return;
+                    CRC32 check = new CRC32();
+                    check.update(body);
+                    if ((int) check.getValue() != crc) return;
+                } catch (EOFException e) {
+                    return;
+                }
+                DataInputStream payload = new DataInputStream(new ByteArrayInputStream(body));
+                RecordType type = RecordType.values()[payload.readByte()];
+                long atMillis = payload.readLong();
+                String key = payload.readUTF();
+                Notification n = null;
+                if (type == RecordType.ENQUEUED) {
+                    n = new Notification();
+                    n.setIdempotencyKey(key);
+                    n.setUserId(payload.readUTF());
+                    n.setChannelType(ChannelType.values()[payload.readByte()]);
+                    n.setPriority(Priority.values()[payload.readByte()]);
+                    n.setMessage(payload.readUTF());
+                }
+                apply(type, atMillis, key, n, pending, settled);
+            }
+        }
+    }
+
+    private static void apply(RecordType type, long atMillis, String key, Notification n,
+                              Map<String, Notification> pending, Map<String, Settlement> settled) {
+        pending.remove(key);
+        settled.remove(key);
+        switch (type) {
+            case ENQUEUED -> pending.put(key, n);
+            case DELIVERED -> settled.put(key, new Settlement(true, atMillis));
+            case ABANDONED -> settled.put(key, new Settlement(false, atMillis));
+            case REJECTED -> { }
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) out.write(record);
+    }
+}
+
+// Async service layer: each channel has its own lanes, rate limit and workers, so a throttled
+// or slow provider only backs up its own traffic. A single batcher per channel groups queued
+// notifications into sendBatch calls; while all of a channel's workers are busy, batches grow.
+// Nothing is dispatched until the outbox has it on disk, and it stays there until delivered or
+// abandoned, so a restart picks up where the last run stopped
 class NotificationService {
-    private ExecutorService executor = Executors.newFixedThreadPool(10);
+    private static final long LANE_FULL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Map<ChannelType, ChannelDispatcher> dispatchers = new EnumMap<>(ChannelType.class);
+    private final ExecutorService executor;
+    private final AtomicInteger liveBatchers = new AtomicInteger(ChannelType.values().length);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final Function<ChannelType, NotificationChannel> channels;
+    private final Map<ChannelType, CircuitBreaker> breakers = new EnumMap<>(ChannelType.class);
+    private final NotificationOutbox outbox;
+    private final RetryPolicy retryPolicy;
+    private final TimingWheel retryWheel = new TimingWheel(Duration.ofMillis(10), 512);
+    // Keyed by idempotency key: sends still in progress, and recent outcomes for duplicate submissions
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Settlement> settled = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public NotificationService() throws IOException {
+        this(Map.of(ChannelType.EMAIL, 100.0, ChannelType.SMS, 20.0, ChannelType.PUSH, 500.0), 1_000, 4, 100,
+                Duration.ofMillis(5), NotificationFactory::getChannel,
+                NotificationOutbox.open(Path.of("notification-outbox.log"), 10_000, Duration.ofHours(24)),
+                new RetryPolicy(5, Duration.ofMillis(200), Duration.ofSeconds(30)),
+                () -> new CircuitBreaker(5, Duration.ofSeconds(30)));
+    }
+
+    public NotificationService(Map<ChannelType, Double> sendsPerSecond, int laneCapacity, int workersPerChannel,
+                               int maxBatchSize, Duration linger, Function<ChannelType, NotificationChannel> channels,
+                               NotificationOutbox outbox, RetryPolicy retryPolicy, Supplier<CircuitBreaker> breaker) {
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+        this.channels = channels;
+        this.outbox = outbox;
+        this.retryPolicy = retryPolicy;
+        executor = Executors.newFixedThreadPool(ChannelType.values().length * workersPerChannel);
+        for (ChannelType type : ChannelType.values()) {
+            double rate = sendsPerSecond.get(type);
+            ChannelDispatcher dispatcher = new ChannelDispatcher(laneCapacity, new TokenBucket(rate, Math.max(1, rate / 10)));
+            dispatchers.put(type, dispatcher);
+            breakers.put(type, breaker.get());
+            Semaphore workers = new Semaphore(workersPerChannel);
+            Thread.ofPlatform().daemon().name("notify-batcher-" + type).start(() -> batch(type, dispatcher, workers));
+        }
 
-    public void sendNotification(Notification notification) {
-        executor.submit(() -> {
-            NotificationChannel channel = NotificationFactory.getChannel(notification.getChannelType());
-            channel.send(notification);
+        settled.putAll(outbox.recoveredSettled());
+        for (Notification n : outbox.recoveredPending()) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            inFlight.put(n.getIdempotencyKey(), result);
+            if (!dispatch(n, 1, result)) retryWhenLaneFrees(n, 1, result);
+        }
+        scheduleSettledPruning();
+    }
+
+    // Completes once the channel has delivered it, after retries. Resubmitting a key that is in
+    // flight returns the same future; one settled within the idempotency window isn't sent again.
+    // Fails fast with RejectedExecutionException when its priority lane is full instead of
+    // queueing without bound
+    public CompletableFuture<Void> sendNotification(Notification notification) {
+        if (notification.getIdempotencyKey() == null) notification.setIdempotencyKey(UUID.randomUUID().toString());
+        String key = notification.getIdempotencyKey();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) return existing;
+        // settle() records the outcome before leaving inFlight, so this can't miss one
+        Settlement settlement = settled.get(key);
+        if (settlement != null) {
+            inFlight.remove(key, result);
+            return settlement.delivered()
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.failedFuture(new IllegalStateException(key + " was already abandoned"));
+        }
+
+        outbox.append(NotificationOutbox.RecordType.ENQUEUED, notification).whenComplete((durable, failure) -> {
+            if (failure != null) {
+                inFlight.remove(key, result);
+                result.completeExceptionally(failure);
+            } else if (!dispatch(notification, 1, result)) {
+                outbox.append(NotificationOutbox.RecordType.REJECTED, notification);
+                inFlight.remove(key, result);
+                result.completeExceptionally(new RejectedExecutionException(
+                        notification.getChannelType() + "/" + notification.getPriority() + " queue is full"));
+            }
         });
+        return result;
+    }
+
+    // Stops accepting work; the queued backlog still drains, and the workers, retry wheel and
+    // outbox are released once the last batcher has handed off its final batch. Retries that
+    // haven't fired yet stay in the outbox for the next start, and their futures fail once the
+    // service has terminated
+    public void shutdown() {
+        closed = true;
+        dispatchers.values().forEach(ChannelDispatcher::close);
+    }
+
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        return terminated.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean dispatch(Notification n, int attempt, CompletableFuture<Void> result) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        if (!dispatchers.get(n.getChannelType()).offer(new PendingNotification(n, sent))) return false;
+        sent.whenComplete((ok, failure) -> {
+            if (failure == null) settle(n, true, result, null);
+            else if (attempt >= retryPolicy.maxAttempts()) settle(n, false, result, failure);
+            // An open circuit still uses up an attempt, so a long outage abandons instead of parking
+            // everything; the jittered backoff on top spreads retries over the reopening window
+            else if (failure instanceof CircuitOpenException open) retryAfterOpen(n, attempt + 1, result, open);
+            else retryLater(n, attempt + 1, result);
+        });
+        return true;
+    }
+
+    private void retryLater(Notification n, int attempt, CompletableFuture<Void> result) {
+        retryLater(n, attempt, result, retryPolicy.backoffNanos(attempt - 1));
+    }
+
+    private void retryAfterOpen(Notification n, int attempt, CompletableFuture<Void> result, CircuitOpenException open) {
+        retryLater(n, attempt, result, open.retryAfterNanos() + retryPolicy.backoffNanos(attempt - 1));
+    }
+
+    // The lane was full, so nothing was sent and no attempt is used; wait at least LANE_FULL_DELAY
+    // so a saturated lane isn't re-offered on every tick
+    private void retryWhenLaneFrees(Notification n, int attempt, CompletableFuture<Void> result) {
+        retryLater(n, attempt, result, Math.max(LANE_FULL_DELAY_NANOS, retryPolicy.backoffNanos(attempt - 1)));
+    }
+
+    private void retryLater(Notification n, int attempt, CompletableFuture<Void> result, long delayNanos) {
+        retryWheel.schedule(() -> {
+            if (!closed && !dispatch(n, attempt, result)) retryWhenLaneFrees(n, attempt, result);
+        }, delayNanos);
+    }
+
+    // A crash before the acknowledgement is on disk means one redelivery, which the channel
+    // drops by idempotency key
+    private void settle(Notification n, boolean delivered, CompletableFuture<Void> result, Throwable failure) {
+        settled.put(n.getIdempotencyKey(), new Settlement(delivered, System.currentTimeMillis()));
+        inFlight.remove(n.getIdempotencyKey(), result);
+        outbox.append(delivered ? NotificationOutbox.RecordType.DELIVERED : NotificationOutbox.RecordType.ABANDONED, n);
+        if (delivered) result.complete(null);
+        else result.completeExceptionally(failure);
+    }
+
+    private void scheduleSettledPruning() {
+        long windowMillis = outbox.idempotencyWindow().toMillis();
+        retryWheel.schedule(() -> {
+            long cutoff = System.currentTimeMillis() - windowMillis;
+            settled.values().removeIf(settlement -> settlement.atMillis() < cutoff);
+            if (!closed) scheduleSettledPruning();
+        }, TimeUnit.MILLISECONDS.toNanos(Math.max(1_000, windowMillis / 10)));
+    }
+
+    private void batch(ChannelType type, ChannelDispatcher dispatcher, Semaphore workers) {
+        try {
+            while (true) {
+                workers.acquire();
+                List<PendingNotification> batch = dispatcher.takeBatch(maxBatchSize, lingerNanos);
+                if (batch == null) break;
+                executor.execute(() -> {
+                    try {
+                        deliver(type, batch);
+                    } finally {
+                        workers.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (liveBatchers.decrementAndGet() == 0) release();
+        }
+    }
+
+    private void release() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            retryWheel.close();
+            outbox.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // What's left was waiting on the retry wheel; it's still in the outbox, so the next
+            // start sends it, but nobody in this process should wait for that
+            inFlight.forEach((key, result) -> result.completeExceptionally(
+                    new IllegalStateException(key + " deferred to outbox recovery")));
+            inFlight.clear();
+            terminated.countDown();
+        }
+    }
+
+    // Skipped outright while the channel's circuit is open, so a dead provider costs no worker
+    // time. A batch where anything got through counts as the provider being up
+    private void deliver(ChannelType type, List<PendingNotification> batch) {
+        CircuitBreaker breaker = breakers.get(type);
+        long retryAfterNanos = breaker.tryAcquire();
+        if (retryAfterNanos > 0) {
+            CircuitOpenException open = new CircuitOpenException(type + " circuit is open", retryAfterNanos);
+            batch.forEach(pending -> pending.result().completeExceptionally(open));
+            return;
+        }
+        List<SendResult> results;
+        try {
+            results = channels.apply(type).sendBatch(batch.stream().map(PendingNotification::notification).toList());
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException(type + " returned " + results.size() + " results for " + batch.size());
+            }
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+        if (results.stream().anyMatch(SendResult::delivered)) breaker.onSuccess();
+        else breaker.onFailure();
+        for (int i = 0; i < batch.size(); i++) {
+            SendResult result = results.get(i);
+            if (result.delivered()) batch.get(i).result().complete(null);
+            else batch.get(i).result().completeExceptionally(result.failure());
+        }
     }
 }
 
 public class Main {
-    public static void main(String[] args) {
-        NotificationService service = new NotificationService();
+    public static void main(String[] args) throws Exception {
+        LocalNotificationChannel local = new LocalNotificationChannel(0.2);
+        NotificationService service = new NotificationService(
+                Map.of(ChannelType.EMAIL, 100.0, ChannelType.SMS, 20.0, ChannelType.PUSH, 500.0), 1_000, 4, 100,
+                Duration.ofMillis(5), type -> local,
+                NotificationOutbox.open(Path.of("notification-outbox.log"), 10_000, Duration.ofHours(24)),
+                new RetryPolicy(5, Duration.ofMillis(200), Duration.ofSeconds(30)),
+                () -> new CircuitBreaker(5, Duration.ofSeconds(30)));
         Notification n = new Notification();
         n.setUserId("U123");
         n.setMessage("New episode released!");
         n.setChannelType(ChannelType.PUSH);
+        n.setPriority(Priority.HIGH);
+        n.setIdempotencyKey("U123:episode-42");
 
-        service.sendNotification(n);
+        service.sendNotification(n).join();
+        service.shutdown();
+        service.awaitTermination(Duration.ofSeconds(10));
     }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package LowLevelDesign.DesignPatterns.LLDChainResponsibilityDesignPattern;
+
+// Walks the chain once at construction and records, per level, the processor that would handle it.
+// Dispatch is then a single array index instead of a walk down nextLoggerProcessor.
+public class CompiledLogProcessor extends LogProcessor {
+
+    private final LogProcessor[] handlerByLevel;
+
+    CompiledLogProcessor(LogProcessor chain) {
+        this(chain, Math.max(INFO, Math.max(DEBUG, ERROR)));
+    }
+
+    CompiledLogProcessor(LogProcessor chain, int maxLevel) {
+        super(null);
+
+        handlerByLevel = new LogProcessor[maxLevel + 1];
+        for (int level = 0; level <= maxLevel; level++) {
+            for (LogProcessor processor = chain; processor != null; processor = processor.nextLoggerProcessor) {
+                if (processor.canHandle(level)) {
+                    handlerByLevel[level] = processor;
+                    break;
+                }
+            }
+        }
+    }
+
+    public void log(int logLevel, String message) {
+
+        if (logLevel >= 0 && logLevel < handlerByLevel.length) {
+            LogProcessor handler = handlerByLevel[logLevel];
+            if (handler != null) {
+                handler.handle(logLevel, message);
+            }
+        }
+    }
+}
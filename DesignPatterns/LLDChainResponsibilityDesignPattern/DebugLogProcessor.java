@@ -6,14 +6,11 @@ public class DebugLogProcessor extends LogProcessor{
         super(nexLogProcessor);
     }
 
-    public void log(int logLevel,String message){
-
-        if(logLevel == DEBUG) {
-            System.out.println("DEBUG: " + message);
-        } else{
-
-            super.log(logLevel, message);
-        }
+    protected boolean canHandle(int logLevel){
+        return logLevel == DEBUG;
+    }
 
+    protected void handle(int logLevel,String message){
+        System.out.println("DEBUG: " + message);
     }
 }
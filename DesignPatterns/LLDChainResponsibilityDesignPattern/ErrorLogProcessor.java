@@ -6,14 +6,11 @@ public class ErrorLogProcessor extends LogProcessor{
         super(nexLogProcessor);
     }
 
-    public void log(int logLevel,String message){
-
-        if(logLevel == ERROR) {
-            System.out.println("ERROR: " + message);
-        } else{
-
-            super.log(logLevel, message);
-        }
+    protected boolean canHandle(int logLevel){
+        return logLevel == ERROR;
+    }
 
+    protected void handle(int logLevel,String message){
+        System.out.println("ERROR: " + message);
     }
 }
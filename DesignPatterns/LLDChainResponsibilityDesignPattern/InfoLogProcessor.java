@@ -6,14 +6,11 @@ public class InfoLogProcessor extends LogProcessor{
         super(nexLogProcessor);
     }
 
-    public void log(int logLevel,String message){
-
-        if(logLevel == INFO) {
-            System.out.println("INFO: " + message);
-        } else{
-
-            super.log(logLevel, message);
-        }
+    protected boolean canHandle(int logLevel){
+        return logLevel == INFO;
+    }
 
+    protected void handle(int logLevel,String message){
+        System.out.println("INFO: " + message);
     }
 }
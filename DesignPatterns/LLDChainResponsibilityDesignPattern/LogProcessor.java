@@ -16,8 +16,17 @@ public abstract class LogProcessor {
 
     public void log(int logLevel, String message) {
 
-        if (nextLoggerProcessor != null) {
+        if (canHandle(logLevel)) {
+            handle(logLevel, message);
+        } else if (nextLoggerProcessor != null) {
             nextLoggerProcessor.log(logLevel, message);
         }
     }
+
+    protected boolean canHandle(int logLevel) {
+        return false;
+    }
+
+    protected void handle(int logLevel, String message) {
+    }
 }
@@ -0,0 +1,84 @@
+package LowLevelDesign.DesignPatterns.LLDChainResponsibilityDesignPattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Chain walking vs the compiled per-level table as the chain grows.
+// The last level is handled by the tail of the chain (worst case for walking), and
+// one level past it is handled by nobody.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogProcessorBenchmark {
+
+    @Param({"3", "10", "50", "200"})
+    int chainLength;
+
+    LogProcessor chain;
+    LogProcessor compiled;
+    long handledCount;
+
+    @Setup
+    public void setup() {
+
+        LogProcessor processor = null;
+        for (int level = chainLength; level >= 1; level--) {
+            processor = new SinkLogProcessor(level, processor);
+        }
+        chain = processor;
+        compiled = new CompiledLogProcessor(chain, chainLength + 1);
+    }
+
+    @Benchmark
+    public void chainHandledAtTail() {
+        chain.log(chainLength, "message");
+    }
+
+    @Benchmark
+    public void compiledHandledAtTail() {
+        compiled.log(chainLength, "message");
+    }
+
+    @Benchmark
+    public void chainUnhandled() {
+        chain.log(chainLength + 1, "message");
+    }
+
+    @Benchmark
+    public void compiledUnhandled() {
+        compiled.log(chainLength + 1, "message");
+    }
+
+    // Handles a single level and counts the message instead of printing it
+    class SinkLogProcessor extends LogProcessor {
+
+        private final int level;
+
+        SinkLogProcessor(int level, LogProcessor nextLogProcessor) {
+            super(nextLogProcessor);
+            this.level = level;
+        }
+
+        protected boolean canHandle(int logLevel) {
+            return logLevel == level;
+        }
+
+        protected void handle(int logLevel, String message) {
+            handledCount++;
+        }
+    }
+}
@@ -10,5 +10,11 @@ public class Main {
         logObject.log(LogProcessor.DEBUG, "need to debug this ");
         logObject.log(LogProcessor.INFO, "just for info ");
 
+        LogProcessor compiledLogObject = new CompiledLogProcessor(logObject);
+
+        compiledLogObject.log(LogProcessor.ERROR, "exception happens");
+        compiledLogObject.log(LogProcessor.DEBUG, "need to debug this ");
+        compiledLogObject.log(LogProcessor.INFO, "just for info ");
+
     }
 }
@@ -8,6 +8,7 @@ class Video {
     private String id;
     private String title;
     private List<String> genres;
+    private List<String> tags;
 }
 
 // Recommendation strategy abstraction
@@ -15,54 +16,1213 @@ interface RecommendationStrategy {
     List<Video> recommend(User user);
 }
 
+// Genres and tags interned to small ints; every video's set is a fixed-width bitset, all stored
+// back to back in one long[] so a scan over the catalogue is sequential memory
+class ContentIndex {
+    private static final int CHUNK_SIZE = 16_384;
+
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final List<Video> videos;
+    private final int words;
+    private final long[] bitsets;
+
+    public ContentIndex(List<Video> catalogue) {
+        this.videos = List.copyOf(catalogue);
+        for (Video video : videos) {
+            for (String tag : tagsOf(video)) tagIds.putIfAbsent(normalize(tag), tagIds.size());
+        }
+        this.words = Math.max(1, (tagIds.size() + 63) >>> 6);
+        this.bitsets = new long[videos.size() * words];
+        for (int v = 0; v < videos.size(); v++) {
+            for (String tag : tagsOf(videos.get(v))) set(bitsets, v * words, tagIds.get(normalize(tag)));
+        }
+    }
+
+    // Score = popcount(query AND video); chunks of the catalogue are scored in parallel, each keeping
+    // its own top-K, and the chunk winners are merged
+    public List<Video> topMatches(Collection<String> likedTags, Set<String> excludedIds, int k) {
+        long[] query = new long[words];
+        for (String tag : likedTags) {
+            Integer id = tagIds.get(normalize(tag));
+            if (id != null) set(query, 0, id);
+        }
+        int chunks = (videos.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> scoreChunk(query, chunk * CHUNK_SIZE, Math.min(videos.size(), (chunk + 1) * CHUNK_SIZE), excludedIds, k))
+                .flatMap(List::stream)
+                .sorted((a, b) -> Long.compare(b >>> 32, a >>> 32))
+                .limit(k)
+                .map(packed -> videos.get(packed.intValue()))
+                .toList();
+    }
+
+    // Candidates are packed as (score << 32 | videoIndex), so one long orders by score and carries the index
+    private List<Long> scoreChunk(long[] query, int from, int to, Set<String> excludedIds, int k) {
+        PriorityQueue<Long> top = new PriorityQueue<>(k + 1);
+        for (int v = from; v < to; v++) {
+            int base = v * words;
+            int score = 0;
+            for (int w = 0; w < words; w++) score += Long.bitCount(query[w] & bitsets[base + w]);
+            if (score == 0 || (top.size() == k && score <= (top.peek() >>> 32))) continue;
+            if (excludedIds.contains(videos.get(v).getId())) continue;
+            top.add(((long) score << 32) | v);
+            if (top.size() > k) top.poll();
+        }
+        return new ArrayList<>(top);
+    }
+
+    private static List<String> tagsOf(Video video) {
+        List<String> tags = new ArrayList<>();
+        if (video.getGenres() != null) tags.addAll(video.getGenres());
+        if (video.getTags() != null) tags.addAll(video.getTags());
+        return tags;
+    }
+
+    private static String normalize(String tag) {
+        return tag.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void set(long[] bits, int offset, int id) {
+        bits[offset + (id >>> 6)] |= 1L << (id & 63);
+    }
+}
+
 // Concrete strategies
 class ContentBasedStrategy implements RecommendationStrategy {
+    private static final int MAX_RECOMMENDATIONS = 50;
+
+    private final ContentIndex index;
+
+    public ContentBasedStrategy(ContentIndex index) {
+        this.index = index;
+    }
+
+    // Match liked genres against each video's genres and tags, skipping what the user already watched
     public List<Video> recommend(User user) {
-        // Match genres and tags
-        return List.of();
+        return index.topMatches(user.getLikedGenres(), new HashSet<>(user.getWatchedVideos()), MAX_RECOMMENDATIONS);
     }
 }
 
+// Sparse user x item watch matrix in CSR form (row = user, sorted item ids per row), plus its
+// transpose (row = item, user ids) for the item-item job. Interactions are binary, so no value arrays
+class InteractionMatrix {
+    final Map<String, Integer> itemIndex = new HashMap<>();
+    final List<String> itemIds = new ArrayList<>();
+    final Map<String, Integer> userIndex = new HashMap<>();
+    final int[] userRowPtr;
+    final int[] userItems;
+    final int[] itemRowPtr;
+    final int[] itemUsers;
+
+    public InteractionMatrix(Map<String, List<String>> watchedByUser) {
+        List<int[]> rows = new ArrayList<>(watchedByUser.size());
+        for (Map.Entry<String, List<String>> entry : watchedByUser.entrySet()) {
+            userIndex.put(entry.getKey(), rows.size());
+            rows.add(entry.getValue().stream().mapToInt(this::internItem).distinct().sorted().toArray());
+        }
+        userRowPtr = new int[rows.size() + 1];
+        for (int u = 0; u < rows.size(); u++) userRowPtr[u + 1] = userRowPtr[u] + rows.get(u).length;
+        userItems = new int[userRowPtr[rows.size()]];
+        for (int u = 0; u < rows.size(); u++) System.arraycopy(rows.get(u), 0, userItems, userRowPtr[u], rows.get(u).length);
+
+        itemRowPtr = new int[itemIds.size() + 1];
+        for (int item : userItems) itemRowPtr[item + 1]++;
+        for (int i = 0; i < itemIds.size(); i++) itemRowPtr[i + 1] += itemRowPtr[i];
+        itemUsers = new int[userItems.length];
+        int[] fill = Arrays.copyOf(itemRowPtr, itemIds.size());
+        for (int u = 0; u < rows.size(); u++) {
+            for (int k = userRowPtr[u]; k < userRowPtr[u + 1]; k++) itemUsers[fill[userItems[k]]++] = u;
+        }
+    }
+
+    int itemCount() { return itemIds.size(); }
+
+    int itemDegree(int item) { return itemRowPtr[item + 1] - itemRowPtr[item]; }
+
+    // Interned ids of the user's items, sorted; empty for a user the batch didn't see
+    int[] itemsOf(String userId) {
+        Integer user = userIndex.get(userId);
+        return user == null ? new int[0] : Arrays.copyOfRange(userItems, userRowPtr[user], userRowPtr[user + 1]);
+    }
+
+    // Users who have both items: a merge of the two item rows, which are sorted by user
+    int coCount(int a, int b) {
+        int count = 0;
+        for (int i = itemRowPtr[a], j = itemRowPtr[b]; i < itemRowPtr[a + 1] && j < itemRowPtr[b + 1]; ) {
+            if (itemUsers[i] < itemUsers[j]) i++;
+            else if (itemUsers[i] > itemUsers[j]) j++;
+            else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private int internItem(String videoId) {
+        return itemIndex.computeIfAbsent(videoId, id -> {
+            itemIds.add(id);
+            return itemIds.size() - 1;
+        });
+    }
+}
+
+// Offline job: top-N cosine neighbours for every item, split over item ranges with ForkJoin.
+// For binary data cosine(i, j) = co(i, j) / sqrt(|i| * |j|); co-occurrences are counted by walking
+// item -> users -> items with a dense per-task counter array
+class ItemSimilarityJob extends RecursiveAction {
+    private static final int ITEMS_PER_TASK = 256;
+    // {counts, touched} per fork-join worker, grown to the largest catalogue seen. counts is
+    // all zeros between items, so a leaf can pick it up without clearing it
+    private static final ThreadLocal<int[][]> SCRATCH = ThreadLocal.withInitial(() -> new int[][] { new int[0], new int[0] });
+
+    private final InteractionMatrix matrix;
+    private final int topN;
+    private final int from, to;
+    private final int[][] neighbours;
+    private final float[][] scores;
+
+    private ItemSimilarityJob(InteractionMatrix matrix, int topN, int from, int to, int[][] neighbours, float[][] scores) {
+        this.matrix = matrix;
+        this.topN = topN;
+        this.from = from;
+        this.to = to;
+        this.neighbours = neighbours;
+        this.scores = scores;
+    }
+
+    public static ItemNeighbourIndex run(InteractionMatrix matrix, int topN) {
+        int items = matrix.itemCount();
+        int[][] neighbours = new int[items][];
+        float[][] scores = new float[items][];
+        ForkJoinPool.commonPool().invoke(new ItemSimilarityJob(matrix, topN, 0, items, neighbours, scores));
+        return new ItemNeighbourIndex(matrix.itemIndex, neighbours, scores);
+    }
+
+    protected void compute() {
+        if (to - from > ITEMS_PER_TASK) {
+            int mid = (from + to) >>> 1;
+            invokeAll(new ItemSimilarityJob(matrix, topN, from, mid, neighbours, scores),
+                      new ItemSimilarityJob(matrix, topN, mid, to, neighbours, scores));
+            return;
+        }
+        int[][] scratch = SCRATCH.get();
+        if (scratch[0].length < matrix.itemCount()) {
+            scratch[0] = new int[matrix.itemCount()];
+            scratch[1] = new int[matrix.itemCount()];
+        }
+        int[] counts = scratch[0];
+        int[] touched = scratch[1];
+        for (int item = from; item < to; item++) {
+            int touchedCount = 0;
+            for (int k = matrix.itemRowPtr[item]; k < matrix.itemRowPtr[item + 1]; k++) {
+                int user = matrix.itemUsers[k];
+                for (int m = matrix.userRowPtr[user]; m < matrix.userRowPtr[user + 1]; m++) {
+                    int other = matrix.userItems[m];
+                    if (other != item && counts[other]++ == 0) touched[touchedCount++] = other;
+                }
+            }
+            topNeighbours(item, counts, touched, touchedCount);
+            for (int t = 0; t < touchedCount; t++) counts[touched[t]] = 0;
+        }
+    }
+
+    // Min-heap of size topN over the touched items, emitted best first
+    private void topNeighbours(int item, int[] counts, int[] touched, int touchedCount) {
+        int size = Math.min(topN, touchedCount);
+        int[] heapItems = new int[size];
+        float[] heapScores = new float[size];
+        int filled = 0;
+        double degree = matrix.itemDegree(item);
+        for (int t = 0; t < touchedCount; t++) {
+            int other = touched[t];
+            float score = (float) (counts[other] / Math.sqrt(degree * matrix.itemDegree(other)));
+            if (filled < size) {
+                heapItems[filled] = other;
+                heapScores[filled] = score;
+                siftUp(heapItems, heapScores, filled++);
+            } else if (score > heapScores[0]) {
+                heapItems[0] = other;
+                heapScores[0] = score;
+                siftDown(heapItems, heapScores, size);
+            }
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(heapItems, heapScores, 0, end);
+            siftDown(heapItems, heapScores, end);
+        }
+        neighbours[item] = heapItems;
+        scores[item] = heapScores;
+    }
+
+    private static void siftUp(int[] items, float[] scores, int i) {
+        while (i > 0 && scores[(i - 1) / 2] > scores[i]) {
+            swap(items, scores, i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private static void siftDown(int[] items, float[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i, left = 2 * i + 1, right = left + 1;
+            if (left < size && scores[left] < scores[smallest]) smallest = left;
+            if (right < size && scores[right] < scores[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(items, scores, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] items, float[] scores, int a, int b) {
+        int item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
+
+// Precomputed neighbour lists, best first, addressed by interned item id
+class ItemNeighbourIndex {
+    private final Map<String, Integer> itemIndex;
+    private final List<String> itemIds;
+    private final int[][] neighbours;
+    private final float[][] scores;
+
+    ItemNeighbourIndex(Map<String, Integer> itemIndex, int[][] neighbours, float[][] scores) {
+        this.itemIndex = itemIndex;
+        this.itemIds = new ArrayList<>(Collections.nCopies(itemIndex.size(), (String) null));
+        itemIndex.forEach((id, index) -> itemIds.set(index, id));
+        this.neighbours = neighbours;
+        this.scores = scores;
+    }
+
+    // Best first; empty for a video the batch didn't see
+    public Map<String, Double> neighbourScores(String videoId) {
+        Integer item = itemIndex.get(videoId);
+        if (item == null) return Map.of();
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int k = 0; k < neighbours[item].length; k++) result.put(itemIds.get(neighbours[item][k]), (double) scores[item][k]);
+        return result;
+    }
+
+    // Sums neighbour similarities over the seed videos, skipping the seeds themselves
+    public List<String> recommend(Collection<String> seedVideoIds, int limit) {
+        Set<Integer> seeds = new HashSet<>();
+        for (String id : seedVideoIds) {
+            Integer item = itemIndex.get(id);
+            if (item != null) seeds.add(item);
+        }
+        Map<Integer, Float> candidates = new HashMap<>();
+        for (int seed : seeds) {
+            for (int k = 0; k < neighbours[seed].length; k++) {
+                if (!seeds.contains(neighbours[seed][k])) candidates.merge(neighbours[seed][k], scores[seed][k], Float::sum);
+            }
+        }
+        return candidates.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Float>comparingByValue().reversed())
+                .limit(limit)
+                .map(e -> itemIds.get(e.getKey()))
+                .toList();
+    }
+}
+
+// Item-based CF: online work is only a merge of the precomputed neighbour lists of the user's watched videos
 class CollaborativeFilteringStrategy implements RecommendationStrategy {
+    private static final int MAX_RECOMMENDATIONS = 50;
+
+    private final ItemNeighbourIndex neighbours;
+    private final Map<String, Video> catalogue;
+
+    public CollaborativeFilteringStrategy(ItemNeighbourIndex neighbours, Map<String, Video> catalogue) {
+        this.neighbours = neighbours;
+        this.catalogue = catalogue;
+    }
+
+    public List<Video> recommend(User user) {
+        return neighbours.recommend(user.getWatchedVideos(), MAX_RECOMMENDATIONS).stream()
+                .map(catalogue::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
+
+// Hierarchical Navigable Small World graph (Malkov & Yashunin) over unit-length float embeddings.
+// Vectors live back to back off-heap, split over direct buffers of a power-of-two node count each
+// (one buffer can't exceed 2 GB); similarity is the dot product.
+// Build inserts in parallel: each node's link lists are guarded by that node's own lock.
+// efSearch trades recall for latency at query time
+class HnswIndex {
+    // Epoch-stamped visited marks, pooled rather than per thread: searches often run on short-lived
+    // virtual threads, so only as many arrays exist as searches ever ran at once
+    private static final class VisitedSet {
+        final int[] marks;
+        int epoch;
+
+        VisitedSet(int size) { this.marks = new int[size]; }
+
+        int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final FloatBuffer[] vectorChunks;
+    private final int chunkShift;
+    private final int chunkMask;
+    private final String[] ids;
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private final int[][][] links;
+    private final Object[] locks;
+    private final Queue<VisitedSet> visitedPool = new ConcurrentLinkedQueue<>();
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+
+    public HnswIndex(List<String> videoIds, List<float[]> embeddings, int m, int efConstruction) {
+        int n = videoIds.size();
+        this.dimension = n == 0 ? 0 : embeddings.get(0).length;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        int nodesPerChunk = Integer.highestOneBit(Math.max(1, Integer.MAX_VALUE / (Math.max(1, dimension) * Float.BYTES)));
+        this.chunkShift = Integer.numberOfTrailingZeros(nodesPerChunk);
+        this.chunkMask = nodesPerChunk - 1;
+        this.vectorChunks = new FloatBuffer[(int) ((n + (long) nodesPerChunk - 1) >> chunkShift)];
+        for (int c = 0; c < vectorChunks.length; c++) {
+            long nodes = Math.min(nodesPerChunk, n - ((long) c << chunkShift));
+            vectorChunks[c] = ByteBuffer.allocateDirect((int) (nodes * dimension * Float.BYTES))
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        this.ids = videoIds.toArray(new String[0]);
+        this.links = new int[n][][];
+        this.locks = new Object[n];
+        for (int i = 0; i < n; i++) {
+            chunk(i).put(offset(i), embeddings.get(i));
+            nodeById.put(ids[i], i);
+            locks[i] = new Object();
+            int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+            links[i] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) links[i][l] = new int[(l == 0 ? maxM0 : m) + 1];  // slot 0 holds the size
+        }
+        if (n == 0) return;
+        insert(0);
+        IntStream.range(1, n).parallel().forEach(this::insert);
+    }
+
+    public Integer nodeOf(String videoId) { return nodeById.get(videoId); }
+
+    public float[] vector(int node) {
+        float[] v = new float[dimension];
+        chunk(node).get(offset(node), v);
+        return v;
+    }
+
+    private FloatBuffer chunk(int node) { return vectorChunks[node >>> chunkShift]; }
+
+    private int offset(int node) { return (node & chunkMask) * dimension; }
+
+    public List<String> search(float[] query, int k, int efSearch) {
+        int entry = entryPoint;
+        if (entry < 0) return List.of();
+        for (int level = maxLevel; level > 0; level--) entry = greedyClosest(query, entry, level);
+        PriorityQueue<Candidate> found = searchLayer(query, entry, Math.max(efSearch, k), 0);
+        List<Candidate> best = new ArrayList<>(found);
+        best.sort((a, b) -> Float.compare(b.similarity, a.similarity));
+        return best.stream().limit(k).map(c -> ids[c.node]).toList();
+    }
+
+    private record Candidate(int node, float similarity) {}
+
+    private void insert(int node) {
+        float[] query = vector(node);
+        int nodeLevel = links[node].length - 1;
+        int entry;
+        int topLevel;
+        synchronized (this) {
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = nodeLevel;
+                return;
+            }
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+        for (int level = topLevel; level > nodeLevel; level--) entry = greedyClosest(query, entry, level);
+        for (int level = Math.min(nodeLevel, topLevel); level >= 0; level--) {
+            PriorityQueue<Candidate> candidates = searchLayer(query, entry, efConstruction, level);
+            List<Candidate> neighbours = selectNeighbours(candidates, m);
+            synchronized (locks[node]) {
+                setLinks(node, level, neighbours);
+            }
+            for (Candidate neighbour : neighbours) connect(neighbour.node, node, neighbour.similarity, level);
+            entry = neighbours.get(0).node;
+        }
+        if (nodeLevel > topLevel) {
+            synchronized (this) {
+                if (nodeLevel > maxLevel) {
+                    maxLevel = nodeLevel;
+                    entryPoint = node;
+                }
+            }
+        }
+    }
+
+    // Adds a back link, shrinking the neighbour's list with the same heuristic once it overflows
+    private void connect(int from, int to, float similarity, int level) {
+        int capacity = level == 0 ? maxM0 : m;
+        synchronized (locks[from]) {
+            int[] list = links[from][level];
+            int size = list[0];
+            if (size < capacity) {
+                list[size + 1] = to;
+                list[0] = size + 1;
+                return;
+            }
+            float[] base = vector(from);
+            PriorityQueue<Candidate> all = new PriorityQueue<>((a, b) -> Float.compare(a.similarity, b.similarity));
+            all.add(new Candidate(to, similarity));
+            for (int i = 1; i <= size; i++) all.add(new Candidate(list[i], dot(base, list[i])));
+            setLinks(from, level, selectNeighbours(all, capacity));
+        }
+    }
+
+    private void setLinks(int node, int level, List<Candidate> neighbours) {
+        int[] list = links[node][level];
+        for (int i = 0; i < neighbours.size(); i++) list[i + 1] = neighbours.get(i).node;
+        list[0] = neighbours.size();
+    }
+
+    // Heuristic selection: keep a candidate only if it is closer to the base than to every kept neighbour,
+    // which spreads links across directions; then top up with the closest leftovers
+    private List<Candidate> selectNeighbours(PriorityQueue<Candidate> candidates, int max) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort((a, b) -> Float.compare(b.similarity, a.similarity));
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : sorted) {
+            if (selected.size() == max) break;
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (dot(candidate.node, kept.node) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) selected.add(skipped.get(i));
+        return selected;
+    }
+
+    private int greedyClosest(float[] query, int entry, int level) {
+        int current = entry;
+        float best = dot(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : neighbours(current, level)) {
+                float similarity = dot(query, neighbour);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Beam search on one layer; returns up to ef nodes as a min-heap on similarity
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedSet visited = visitedPool.poll();
+        if (visited == null) visited = new VisitedSet(ids.length);
+        try {
+            return searchLayer(query, entry, ef, level, visited.marks, visited.nextEpoch());
+        } finally {
+            visitedPool.add(visited);
+        }
+    }
+
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level, int[] marks, int epoch) {
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>((a, b) -> Float.compare(b.similarity, a.similarity));
+        PriorityQueue<Candidate> found = new PriorityQueue<>((a, b) -> Float.compare(a.similarity, b.similarity));
+        Candidate start = new Candidate(entry, dot(query, entry));
+        marks[entry] = epoch;
+        toVisit.add(start);
+        found.add(start);
+        while (!toVisit.isEmpty()) {
+            Candidate current = toVisit.poll();
+            if (current.similarity < found.peek().similarity && found.size() >= ef) break;
+            for (int neighbour : neighbours(current.node, level)) {
+                if (marks[neighbour] == epoch) continue;
+                marks[neighbour] = epoch;
+                float similarity = dot(query, neighbour);
+                if (found.size() < ef || similarity > found.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    toVisit.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) found.poll();
+                }
+            }
+        }
+        return found;
+    }
+
+    private int[] neighbours(int node, int level) {
+        if (level >= links[node].length) return new int[0];
+        synchronized (locks[node]) {
+            int[] list = links[node][level];
+            return Arrays.copyOfRange(list, 1, list[0] + 1);
+        }
+    }
+
+    private float dot(float[] query, int node) {
+        FloatBuffer vectors = chunk(node);
+        int base = offset(node);
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) sum += query[i] * vectors.get(base + i);
+        return sum;
+    }
+
+    private float dot(int a, int b) {
+        FloatBuffer vectorsA = chunk(a), vectorsB = chunk(b);
+        int baseA = offset(a), baseB = offset(b);
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) sum += vectorsA.get(baseA + i) * vectorsB.get(baseB + i);
+        return sum;
+    }
+}
+
+// Ranks videos by embedding similarity to the user's taste vector: the normalized mean of the
+// embeddings of what they watched
+class EmbeddingStrategy implements RecommendationStrategy {
+    private static final int MAX_RECOMMENDATIONS = 50;
+
+    private final HnswIndex index;
+    private final Map<String, Video> catalogue;
+    private final int efSearch;
+
+    public EmbeddingStrategy(HnswIndex index, Map<String, Video> catalogue, int efSearch) {
+        this.index = index;
+        this.catalogue = catalogue;
+        this.efSearch = efSearch;
+    }
+
     public List<Video> recommend(User user) {
-        // Similar users’ history
-        return List.of();
+        float[] taste = null;
+        for (String videoId : user.getWatchedVideos()) {
+            Integer node = index.nodeOf(videoId);
+            if (node == null) continue;
+            float[] v = index.vector(node);
+            if (taste == null) taste = new float[v.length];
+            for (int i = 0; i < v.length; i++) taste[i] += v[i];
+        }
+        if (taste == null) return List.of();
+        double norm = 0;
+        for (float x : taste) norm += x * x;
+        // All-zero embeddings have no direction to search in
+        if (norm == 0) return List.of();
+        for (int i = 0; i < taste.length; i++) taste[i] /= (float) Math.sqrt(norm);
+
+        Set<String> watched = new HashSet<>(user.getWatchedVideos());
+        return index.search(taste, MAX_RECOMMENDATIONS + watched.size(), efSearch).stream()
+                .filter(id -> !watched.contains(id))
+                .limit(MAX_RECOMMENDATIONS)
+                .map(catalogue::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 }
 
-// Caching layer (thread-safe)
+enum InteractionType { WATCHED, LIKED }
+
+record InteractionEvent(String userId, String videoId, InteractionType type) {}
+
+// Item-item model kept fresh from the event stream, on top of the last batch run: the batch
+// InteractionMatrix and ItemNeighbourIndex are the starting point, and only what happened since
+// (new item degrees, co-occurrence counts and user histories) is held here. Events are queued by
+// callers and applied in micro-batches by one scheduler thread: each new (user, video) pair bumps
+// the pair counts with the user's full history, a pair being seeded from the batch matrix the
+// first time it changes. Each item keeps its top-N candidates ranked by co(i, j) / sqrt(|j|), which
+// is cosine up to the item's own degree, so a micro-batch only rescores the pairs whose counts
+// changed and republishes those items; only the users in the batch have their cached
+// recommendations invalidated. A neighbour's degree changing shifts its rank slightly until one of
+// its pairs changes or the next batch run replaces the model
+class StreamingItemModel {
+    private final InteractionMatrix base;
+    private final ItemNeighbourIndex baseNeighbours;
+    private final int topN;
+    private final RecommendationCache cache;
+    private final Queue<InteractionEvent> pending = new ConcurrentLinkedQueue<>();
+    // Batch plus streamed counts, for the pairs that changed since the batch run
+    private final Map<String, Map<String, Integer>> pairCounts = new HashMap<>();
+    private final Map<String, Integer> deltaDegrees = new HashMap<>();
+    private final Map<String, Map<String, Double>> candidates = new HashMap<>();
+    private final Map<String, Set<String>> histories = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> neighbours = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Double>> neighbourScores = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "streaming-item-model");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StreamingItemModel(InteractionMatrix base, ItemNeighbourIndex baseNeighbours, int topN,
+                              RecommendationCache cache, long batchIntervalMillis) {
+        this.base = base;
+        this.baseNeighbours = baseNeighbours;
+        this.topN = topN;
+        this.cache = cache;
+        scheduler.scheduleWithFixedDelay(this::applyBatch, batchIntervalMillis, batchIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void onEvent(InteractionEvent event) {
+        pending.add(event);
+    }
+
+    public List<String> neighboursOf(String videoId) {
+        List<String> updated = neighbours.get(videoId);
+        return updated != null ? updated : List.copyOf(baseNeighbours.neighbourScores(videoId).keySet());
+    }
+
+    public double similarity(String videoId, String neighbourId) {
+        Map<String, Double> updated = neighbourScores.get(videoId);
+        return (updated != null ? updated : baseNeighbours.neighbourScores(videoId)).getOrDefault(neighbourId, 0.0);
+    }
+
+    // Batch history plus interactions since the batch run
+    public Set<String> historyOf(String userId) {
+        Set<String> history = new HashSet<>(histories.getOrDefault(userId, Set.of()));
+        for (int item : base.itemsOf(userId)) history.add(base.itemIds.get(item));
+        return history;
+    }
+
+    public void close() {
+        scheduler.shutdown();
+    }
+
+    // Runs on the scheduler thread only, so the delta maps need no locking. An escaping exception
+    // would cancel every later batch, so a bad event is dropped on its own and a failed batch is
+    // logged; its items catch up the next time they are touched
+    void applyBatch() {
+        try {
+            Map<String, Set<String>> changedPairs = new HashMap<>();
+            Set<String> touchedUsers = new HashSet<>();
+            InteractionEvent event;
+            while ((event = pending.poll()) != null) {
+                try {
+                    apply(event, changedPairs);
+                    touchedUsers.add(event.userId());
+                } catch (RuntimeException e) {
+                    System.err.println("Dropping interaction event " + event + ": " + e);
+                }
+            }
+            changedPairs.forEach(this::rescore);
+            for (String userId : touchedUsers) cache.recordInteraction(userId);
+        } catch (RuntimeException e) {
+            System.err.println("Streaming model batch failed, continuing with the next one: " + e);
+        }
+    }
+
+    // Checked before anything is changed, so a rejected event leaves no partial counts behind
+    private void apply(InteractionEvent event, Map<String, Set<String>> changedPairs) {
+        if (event.userId() == null || event.videoId() == null) throw new IllegalArgumentException("missing user or video id");
+        Set<String> history = histories.computeIfAbsent(event.userId(), k -> ConcurrentHashMap.newKeySet());
+        String item = event.videoId();
+        int[] baseHistory = base.itemsOf(event.userId());
+        Integer baseItem = base.itemIndex.get(item);
+        if (history.contains(item) || baseItem != null && Arrays.binarySearch(baseHistory, baseItem) >= 0) return;
+        deltaDegrees.merge(item, 1, Integer::sum);
+        // Republished even without new pairs, since its own degree changed
+        Set<String> changed = changedPairs.computeIfAbsent(item, k -> new HashSet<>());
+        List<String> fullHistory = new ArrayList<>(history);
+        for (int other : baseHistory) fullHistory.add(base.itemIds.get(other));
+        for (String other : fullHistory) {
+            bumpPair(item, other);
+            changed.add(other);
+            changedPairs.computeIfAbsent(other, k -> new HashSet<>()).add(item);
+        }
+        history.add(item);
+    }
+
+    private void bumpPair(String a, String b) {
+        Integer count = pairCounts.computeIfAbsent(a, k -> new HashMap<>()).get(b);
+        int updated = (count != null ? count : baseCoCount(a, b)) + 1;
+        pairCounts.get(a).put(b, updated);
+        pairCounts.computeIfAbsent(b, k -> new HashMap<>()).put(a, updated);
+    }
+
+    private int baseCoCount(String a, String b) {
+        Integer baseA = base.itemIndex.get(a), baseB = base.itemIndex.get(b);
+        return baseA == null || baseB == null ? 0 : base.coCount(baseA, baseB);
+    }
+
+    private int degree(String item) {
+        Integer baseItem = base.itemIndex.get(item);
+        return (baseItem == null ? 0 : base.itemDegree(baseItem)) + deltaDegrees.getOrDefault(item, 0);
+    }
+
+    // Seeded from the batch list, whose cosine times sqrt(batch degree) is the same ranking key
+    private Map<String, Double> seedCandidates(String item) {
+        Integer baseItem = base.itemIndex.get(item);
+        Map<String, Double> seeded = new HashMap<>();
+        if (baseItem == null) return seeded;
+        double degree = Math.sqrt(base.itemDegree(baseItem));
+        baseNeighbours.neighbourScores(item).forEach((other, score) -> seeded.put(other, score * degree));
+        return seeded;
+    }
+
+    private void rescore(String item, Set<String> changed) {
+        Map<String, Double> ranked = candidates.computeIfAbsent(item, this::seedCandidates);
+        Map<String, Integer> counts = pairCounts.getOrDefault(item, Map.of());
+        for (String other : changed) ranked.put(other, counts.get(other) / Math.sqrt(Math.max(1, degree(other))));
+        List<String> top = ranked.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topN)
+                .map(Map.Entry::getKey)
+                .toList();
+        ranked.keySet().retainAll(top);
+        double norm = Math.sqrt(degree(item));
+        Map<String, Double> topScores = new HashMap<>();
+        for (String other : top) topScores.put(other, ranked.get(other) / norm);
+        neighbourScores.put(item, topScores);
+        neighbours.put(item, top);
+    }
+}
+
+// Collaborative filtering over the streaming model: merges the current neighbour lists of everything
+// the user has interacted with, including events not yet reflected in User.watchedVideos
+class StreamingCollaborativeStrategy implements RecommendationStrategy {
+    private static final int MAX_RECOMMENDATIONS = 50;
+
+    private final StreamingItemModel model;
+    private final Map<String, Video> catalogue;
+
+    public StreamingCollaborativeStrategy(StreamingItemModel model, Map<String, Video> catalogue) {
+        this.model = model;
+        this.catalogue = catalogue;
+    }
+
+    public List<Video> recommend(User user) {
+        Set<String> seeds = new HashSet<>(user.getWatchedVideos());
+        seeds.addAll(model.historyOf(user.getUserId()));
+        Map<String, Double> candidates = new HashMap<>();
+        for (String seed : seeds) {
+            for (String neighbour : model.neighboursOf(seed)) {
+                if (!seeds.contains(neighbour)) candidates.merge(neighbour, model.similarity(seed, neighbour), Double::sum);
+            }
+        }
+        return candidates.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(MAX_RECOMMENDATIONS)
+                .map(e -> catalogue.get(e.getKey()))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
+
+// Blends several strategies: each runs on its own virtual thread with its own deadline, and the
+// rankings are fused with weighted reciprocal rank fusion, score(v) = sum of weight / (RRF_K + rank).
+// A strategy that misses its deadline or fails is cancelled and simply contributes nothing, so one
+// slow model can't blow the request's latency budget
+class HybridStrategy implements RecommendationStrategy {
+    private static final int RRF_K = 60;
+    private static final int MAX_RECOMMENDATIONS = 50;
+
+    public record WeightedStrategy(RecommendationStrategy strategy, double weight, long deadlineMillis) {}
+
+    private final List<WeightedStrategy> strategies;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder missedDeadlines = new LongAdder();
+
+    public HybridStrategy(List<WeightedStrategy> strategies) {
+        this.strategies = List.copyOf(strategies);
+    }
+
+    public List<Video> recommend(User user) {
+        long start = System.nanoTime();
+        List<Future<List<Video>>> pending = new ArrayList<>(strategies.size());
+        for (WeightedStrategy weighted : strategies) pending.add(executor.submit(() -> weighted.strategy().recommend(user)));
+
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Video> videos = new HashMap<>();
+        for (int i = 0; i < strategies.size(); i++) {
+            WeightedStrategy weighted = strategies.get(i);
+            Future<List<Video>> future = pending.get(i);
+            long remaining = start + TimeUnit.MILLISECONDS.toNanos(weighted.deadlineMillis()) - System.nanoTime();
+            List<Video> ranked;
+            try {
+                ranked = future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                future.cancel(true);
+                missedDeadlines.increment();
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.forEach(f -> f.cancel(true));
+                break;
+            }
+            for (int rank = 0; rank < ranked.size(); rank++) {
+                Video video = ranked.get(rank);
+                scores.merge(video.getId(), weighted.weight() / (RRF_K + rank + 1), Double::sum);
+                videos.putIfAbsent(video.getId(), video);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(MAX_RECOMMENDATIONS)
+                .map(e -> videos.get(e.getKey()))
+                .toList();
+    }
+
+    public long getMissedDeadlineCount() { return missedDeadlines.sum(); }
+}
+
+// Caching layer (thread-safe): bounded LRU with a TTL and a per-user interaction version.
+// A hit that has expired or predates the user's latest interaction is still served immediately,
+// while one background recompute refreshes it (stale-while-revalidate)
 class RecommendationCache {
-    private Map<String, List<Video>> userCache = new ConcurrentHashMap<>();
-    public List<Video> get(String userId) { return userCache.get(userId); }
-    public void put(String userId, List<Video> recs) { userCache.put(userId, recs); }
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+
+    private static class Slot {
+        long interactionVersion;
+        List<Video> recs;
+        long computedVersion;
+        long computedAt;
+        boolean refreshing;
+    }
+
+    private final long ttlMillis;
+    private final Map<String, Slot> slots;
+    // Kept apart from the slots and bounded separately, oldest interaction evicted first. Once a user
+    // is evicted nobody knows when they last interacted, so anyone not tracked is assumed to have
+    // interacted as late as the newest evicted timestamp
+    private final Map<String, Long> lastInteractionAt;
+    private long evictedInteractionsUpTo;
+    private final ExecutorService refresher = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "recommendation-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RecommendationCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    public RecommendationCache(int capacity, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.slots = new LinkedHashMap<>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Slot> eldest) {
+                return size() > capacity;
+            }
+        };
+        // A timestamp is far smaller than a slot's list, so it can outlive the slot for a while
+        long trackedInteractions = Math.min(Integer.MAX_VALUE, 10L * capacity);
+        this.lastInteractionAt = new LinkedHashMap<>() {
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() <= trackedInteractions) return false;
+                evictedInteractionsUpTo = Math.max(evictedInteractionsUpTo, eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    // Fresh hit: cached list. Stale hit: cached list plus an async refresh. Miss: computed inline
+    public List<Video> get(String userId, Supplier<List<Video>> compute) {
+        long version;
+        synchronized (this) {
+            Slot slot = slots.get(userId);
+            if (slot != null && slot.recs != null) {
+                if (!isFresh(slot) && !slot.refreshing) {
+                    slot.refreshing = true;
+                    long refreshVersion = slot.interactionVersion;
+                    refresher.execute(() -> refresh(userId, refreshVersion, compute));
+                }
+                return slot.recs;
+            }
+            version = slot == null ? 0 : slot.interactionVersion;
+        }
+        List<Video> recs = compute.get();
+        put(userId, recs, version);
+        return recs;
+    }
+
+    // `version` is the interaction version observed before computing; an older result never replaces a newer one
+    public synchronized void put(String userId, List<Video> recs, long version) {
+        Slot slot = slots.computeIfAbsent(userId, k -> new Slot());
+        if (slot.recs != null && slot.computedVersion > version) return;
+        slot.recs = recs;
+        slot.computedVersion = version;
+        slot.computedAt = System.currentTimeMillis();
+    }
+
+    // The user watched or liked something: whatever is cached for them is now stale
+    public synchronized void recordInteraction(String userId) {
+        slots.computeIfAbsent(userId, k -> new Slot()).interactionVersion++;
+        // Re-inserted so the map stays ordered by interaction time
+        lastInteractionAt.remove(userId);
+        lastInteractionAt.put(userId, System.currentTimeMillis());
+    }
+
+    // Epoch millis of the user's last interaction, or a conservative upper bound once it has been
+    // evicted; 0 if none since the last forgetInteractionsBefore
+    public synchronized long lastInteractionAt(String userId) {
+        return lastInteractionAt.getOrDefault(userId, evictedInteractionsUpTo);
+    }
+
+    // Interactions before the cutoff are already reflected in a batch run and needn't be tracked
+    public synchronized void forgetInteractionsBefore(long cutoffMillis) {
+        lastInteractionAt.values().removeIf(at -> at < cutoffMillis);
+        if (evictedInteractionsUpTo < cutoffMillis) evictedInteractionsUpTo = 0;
+    }
+
+    private boolean isFresh(Slot slot) {
+        return slot.computedVersion == slot.interactionVersion
+                && System.currentTimeMillis() - slot.computedAt < ttlMillis;
+    }
+
+    private void refresh(String userId, long version, Supplier<List<Video>> compute) {
+        try {
+            put(userId, compute.get(), version);
+        } finally {
+            synchronized (this) {
+                Slot slot = slots.get(userId);
+                if (slot != null) slot.refreshing = false;
+            }
+        }
+    }
+}
+
+// Read-only, memory-mapped store of precomputed recommendations keyed by userId.
+// Layout: [int magic][int slots][int videoCount][long cutoffMillis][video id dictionary: short len + UTF-8 each]
+//         [slots x (long userHash, int recordOffset)] open-addressed, linear probing
+//         [records: short userIdLen + UTF-8 userId, short count, count x int videoIndex]
+// The userId is kept in the record so a 64-bit hash collision can't return someone else's list.
+// cutoffMillis is when the batch started reading interactions; anything later isn't reflected
+class PrecomputedRecommendationStore {
+    private static final int MAGIC = 0x52454332;
+    private static final int HEADER_BYTES = 20;
+    private static final int SLOT_BYTES = 12;
+
+    private final ByteBuffer data;
+    private final int slots;
+    private final long cutoffMillis;
+    private final int slotsOffset;
+    private final String[] videoIds;
+
+    private PrecomputedRecommendationStore(ByteBuffer data) {
+        if (data.getInt(0) != MAGIC) throw new IllegalArgumentException("Not a recommendation store");
+        this.data = data;
+        this.slots = data.getInt(4);
+        this.videoIds = new String[data.getInt(8)];
+        this.cutoffMillis = data.getLong(12);
+        int pos = HEADER_BYTES;
+        for (int i = 0; i < videoIds.length; i++) {
+            byte[] utf8 = new byte[data.getShort(pos) & 0xFFFF];
+            data.get(pos + 2, utf8);
+            videoIds[i] = new String(utf8, StandardCharsets.UTF_8);
+            pos += 2 + utf8.length;
+        }
+        this.slotsOffset = pos;
+    }
+
+    public static PrecomputedRecommendationStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PrecomputedRecommendationStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static void write(Map<String, List<String>> recsByUser, long cutoffMillis, Path path) throws IOException {
+        Map<String, Integer> videoIndex = new LinkedHashMap<>();
+        recsByUser.values().forEach(recs -> recs.forEach(id -> videoIndex.putIfAbsent(id, videoIndex.size())));
+        int slots = Integer.highestOneBit(Math.max(1, recsByUser.size()) * 2 - 1) << 1;
+
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        DataOutputStream dict = new DataOutputStream(dictionary);
+        for (String id : videoIndex.keySet()) writeString(dict, id);
+
+        long[] hashes = new long[slots];
+        int[] offsets = new int[slots];
+        Arrays.fill(offsets, -1);
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream rec = new DataOutputStream(records);
+        int recordsBase = HEADER_BYTES + dictionary.size() + slots * SLOT_BYTES;
+        for (Map.Entry<String, List<String>> entry : recsByUser.entrySet()) {
+            long hash = hash(entry.getKey());
+            int slot = (int) (hash & (slots - 1));
+            while (offsets[slot] >= 0) slot = (slot + 1) & (slots - 1);
+            hashes[slot] = hash;
+            offsets[slot] = recordsBase + rec.size();
+            writeString(rec, entry.getKey());
+            rec.writeShort(entry.getValue().size());
+            for (String id : entry.getValue()) rec.writeInt(videoIndex.get(id));
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(slots);
+            out.writeInt(videoIndex.size());
+            out.writeLong(cutoffMillis);
+            dictionary.writeTo(out);
+            for (int i = 0; i < slots; i++) {
+                out.writeLong(hashes[i]);
+                out.writeInt(offsets[i]);
+            }
+            records.writeTo(out);
+        }
+    }
+
+    public long cutoffMillis() {
+        return cutoffMillis;
+    }
+
+    // Video ids for the user, best first, or null when the batch had nothing for them
+    public List<String> lookup(String userId) {
+        long hash = hash(userId);
+        for (int slot = (int) (hash & (slots - 1)); ; slot = (slot + 1) & (slots - 1)) {
+            int at = slotsOffset + slot * SLOT_BYTES;
+            int offset = data.getInt(at + 8);
+            if (offset < 0) return null;
+            if (data.getLong(at) == hash && userIdMatches(offset, userId)) {
+                int idLength = data.getShort(offset) & 0xFFFF;
+                int count = data.getShort(offset + 2 + idLength) & 0xFFFF;
+                int base = offset + 4 + idLength;
+                String[] recs = new String[count];
+                for (int i = 0; i < count; i++) recs[i] = videoIds[data.getInt(base + i * 4)];
+                return Arrays.asList(recs);
+            }
+        }
+    }
+
+    private boolean userIdMatches(int offset, String userId) {
+        byte[] expected = userId.getBytes(StandardCharsets.UTF_8);
+        if ((data.getShort(offset) & 0xFFFF) != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (data.get(offset + 2 + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    // FNV-1a 64
+    private static long hash(String userId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : userId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
+
+// Offline/scheduled job: recommendations for all active users, computed in parallel with ForkJoin
+// over user partitions, then written to a PrecomputedRecommendationStore file
+class BatchRecommendationJob extends RecursiveAction {
+    private static final int USERS_PER_TASK = 512;
+
+    private final List<User> users;
+    private final RecommendationStrategy strategy;
+    private final Map<String, List<String>> results;
+
+    private BatchRecommendationJob(List<User> users, RecommendationStrategy strategy, Map<String, List<String>> results) {
+        this.users = users;
+        this.strategy = strategy;
+        this.results = results;
+    }
+
+    public static PrecomputedRecommendationStore run(List<User> activeUsers, RecommendationStrategy strategy, Path output)
+            throws IOException {
+        long cutoffMillis = System.currentTimeMillis();
+        Map<String, List<String>> results = new ConcurrentHashMap<>();
+        ForkJoinPool.commonPool().invoke(new BatchRecommendationJob(activeUsers, strategy, results));
+        PrecomputedRecommendationStore.write(results, cutoffMillis, output);
+        return PrecomputedRecommendationStore.open(output);
+    }
+
+    protected void compute() {
+        if (users.size() > USERS_PER_TASK) {
+            int mid = users.size() / 2;
+            invokeAll(new BatchRecommendationJob(users.subList(0, mid), strategy, results),
+                      new BatchRecommendationJob(users.subList(mid, users.size()), strategy, results));
+            return;
+        }
+        for (User user : users) {
+            results.put(user.getUserId(), strategy.recommend(user).stream().map(Video::getId).toList());
+        }
+    }
 }
 
 // Service layer
 class RecommendationService {
     private RecommendationStrategy strategy;
     private RecommendationCache cache;
+    private Map<String, Video> catalogue;
+    private volatile PrecomputedRecommendationStore precomputed;
 
     public RecommendationService(RecommendationStrategy strategy, RecommendationCache cache) {
+        this(strategy, cache, null, Map.of());
+    }
+
+    public RecommendationService(RecommendationStrategy strategy, RecommendationCache cache,
+                                 PrecomputedRecommendationStore precomputed, Map<String, Video> catalogue) {
         this.strategy = strategy;
         this.cache = cache;
+        this.precomputed = precomputed;
+        this.catalogue = catalogue;
     }
 
-    public List<Video> getRecommendations(User user) {
-        if (cache.get(user.getUserId()) != null)
-            return cache.get(user.getUserId());
+    // Swapped in after each batch run; users who interacted before its cutoff are served from it again
+    public void setPrecomputedStore(PrecomputedRecommendationStore precomputed) {
+        this.precomputed = precomputed;
+        if (precomputed != null) cache.forgetInteractionsBefore(precomputed.cutoffMillis());
+    }
 
-        List<Video> recs = strategy.recommend(user);
-        cache.put(user.getUserId(), recs);
-        return recs;
+    // Precomputed list when the batch covered the user and they haven't interacted since its cutoff;
+    // otherwise the cached/live path
+    public List<Video> getRecommendations(User user) {
+        PrecomputedRecommendationStore store = precomputed;
+        if (store != null && cache.lastInteractionAt(user.getUserId()) < store.cutoffMillis()) {
+            List<String> ids = store.lookup(user.getUserId());
+            if (ids != null) return ids.stream().map(catalogue::get).filter(Objects::nonNull).toList();
+        }
+        return cache.get(user.getUserId(), () -> strategy.recommend(user));
     }
 }
 
 public class Main {
     public static void main(String[] args) {
         User user = new User();
+        user.setUserId("U1");
+        user.setWatchedVideos(List.of());
+        user.setLikedGenres(List.of("Action"));
         RecommendationCache cache = new RecommendationCache();
 
-        RecommendationStrategy strategy = new ContentBasedStrategy();
+        Video video = new Video();
+        video.setId("V1");
+        video.setTitle("Attack on Titan");
+        video.setGenres(List.of("Action", "Dark Fantasy"));
+        video.setTags(List.of("titans"));
+        ContentIndex contentIndex = new ContentIndex(List.of(video));
+
+        RecommendationStrategy strategy = new ContentBasedStrategy(contentIndex);
         RecommendationService service = new RecommendationService(strategy, cache);
 
         List<Video> recs = service.getRecommendations(user);
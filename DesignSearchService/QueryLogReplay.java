@@ -0,0 +1,121 @@
+import java.util.*;
+
+// Replays a Zipf-distributed query log against SearchService over a synthetic catalogue and reports
+// p50/p99/p999 latency, throughput, cache hit ratio and the heap footprint of the index.
+// Usage: java QueryLogReplay [titles] [queries] [distinctQueries] [zipfExponent]
+public class QueryLogReplay {
+    public static void main(String[] args) {
+        int titleCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int distinctQueries = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        double zipfExponent = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(42);
+        Map<String, Double> titles = catalogue.titles(titleCount);
+        long heapBefore = usedHeap();
+        Trie trie = new Trie();
+        titles.forEach(trie::insert);
+        long indexBytes = usedHeap() - heapBefore;
+
+        String[] queryLog = catalogue.queryLog(titles, queryCount, distinctQueries, zipfExponent);
+        SearchService service = new SearchService(trie);
+
+        int warmup = queryLog.length / 10;
+        for (int i = 0; i < warmup; i++) service.search(queryLog[i]);
+
+        long[] latencies = new long[queryLog.length - warmup];
+        long start = System.nanoTime();
+        for (int i = warmup; i < queryLog.length; i++) {
+            long t0 = System.nanoTime();
+            service.search(queryLog[i]);
+            latencies[i - warmup] = System.nanoTime() - t0;
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+
+        System.out.printf("titles=%d queries=%d distinct=%d zipf=%.2f%n", titles.size(), latencies.length, distinctQueries, zipfExponent);
+        System.out.printf("p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+                percentile(latencies, 0.999) / 1e3, latencies[latencies.length - 1] / 1e3);
+        System.out.printf("throughput=%.0f queries/s%n", latencies.length / (elapsed / 1e9));
+        System.out.printf("cacheHitRatio=%.3f%n", service.cacheHitRatio());
+        System.out.printf("indexHeap=%.1f MB%n", indexBytes / (1024.0 * 1024.0));
+    }
+
+    static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // Approximate live heap after a few GC hints; good enough to compare index layouts
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// Deterministic catalogue of made-up titles built from a syllable vocabulary, plus a query log of
+// title prefixes whose popularity follows a Zipf distribution
+class SyntheticCatalogue {
+    private static final String[] SYLLABLES = {
+            "ka", "ri", "to", "na", "mu", "shi", "ro", "ga", "zen", "ko", "yu", "mi", "ha", "re", "no",
+            "su", "ki", "da", "bo", "sei", "ten", "ryu", "hi", "me", "ta", "ke", "jin", "sa", "ya", "o"
+    };
+
+    private final Random random;
+
+    SyntheticCatalogue(long seed) {
+        this.random = new Random(seed);
+    }
+
+    Map<String, Double> titles(int count) {
+        Map<String, Double> titles = new HashMap<>(count * 2);
+        while (titles.size() < count) {
+            StringBuilder title = new StringBuilder();
+            int words = 1 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) title.append(' ');
+                int syllables = 1 + random.nextInt(4);
+                for (int s = 0; s < syllables; s++) title.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                if (w == 0) title.setCharAt(0, Character.toUpperCase(title.charAt(0)));
+            }
+            titles.put(title.toString(), random.nextInt(1000) / 100.0);
+        }
+        return titles;
+    }
+
+    String[] queryLog(Map<String, Double> titles, int length, int distinct, double exponent) {
+        List<String> all = new ArrayList<>(titles.keySet());
+        String[] queries = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            String title = all.get(random.nextInt(all.size()));
+            queries[i] = title.substring(0, 1 + random.nextInt(Math.min(title.length(), 12)));
+        }
+        ZipfSampler sampler = new ZipfSampler(distinct, exponent, random);
+        String[] log = new String[length];
+        for (int i = 0; i < length; i++) log[i] = queries[sampler.next()];
+        return log;
+    }
+}
+
+// Samples ranks 0..n-1 with P(rank k) proportional to 1/(k+1)^s by binary search over the CDF
+class ZipfSampler {
+    private final double[] cdf;
+    private final Random random;
+
+    ZipfSampler(int n, double exponent, Random random) {
+        this.cdf = new double[n];
+        this.random = random;
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) cdf[k] /= sum;
+    }
+
+    int next() {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+    }
+}
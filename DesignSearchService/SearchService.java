@@ -3,55 +3,1144 @@ class Anime {
     private String title;
     private String genre;
     private double rating;
+
+    public Anime() {}
+
+    public Anime(String id, String title, String genre, double rating) {
+        this.id = id;
+        this.title = title;
+        this.genre = genre;
+        this.rating = rating;
+    }
+}
+
+// Prefix autocomplete over titles, best-rated first
+interface AutocompleteIndex {
+    List<String> searchPrefix(String prefix);
+
+    // Titles within maxEdits of being a prefix match; indexes without fuzzy support return nothing
+    default List<String> searchFuzzyPrefix(String prefix, int maxEdits) {
+        return List.of();
+    }
+
+    // Bumped on every mutation; cached results from an older generation are stale
+    long generation();
 }
 
-// Trie node for prefix search
+record ScoredTitle(String title, double rating) {}
+
+// Radix tree node: the edge label leading here, children packed in arrays sorted by first char,
+// and the top-K titles (by rating) of the whole subtree precomputed on insert
 class TrieNode {
-    Map<Character, TrieNode> children = new HashMap<>();
-    List<String> titles = new ArrayList<>();
+    private static final char[] NO_KEYS = new char[0];
+    private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+    private static final String[] NO_TITLES = new String[0];
+
+    String label;
+    char[] childKeys = NO_KEYS;
+    TrieNode[] children = NO_CHILDREN;
+    String[] topTitles = NO_TITLES;
+    double[] topRatings = new double[0];
+
+    TrieNode(String label) {
+        this.label = label;
+    }
+
+    TrieNode child(char c) {
+        int i = Arrays.binarySearch(childKeys, c);
+        return i >= 0 ? children[i] : null;
+    }
+
+    void putChild(TrieNode node) {
+        char c = node.label.charAt(0);
+        int i = Arrays.binarySearch(childKeys, c);
+        if (i >= 0) {
+            children[i] = node;
+            return;
+        }
+        int at = -i - 1;
+        char[] keys = new char[childKeys.length + 1];
+        TrieNode[] nodes = new TrieNode[children.length + 1];
+        System.arraycopy(childKeys, 0, keys, 0, at);
+        System.arraycopy(children, 0, nodes, 0, at);
+        keys[at] = c;
+        nodes[at] = node;
+        System.arraycopy(childKeys, at, keys, at + 1, childKeys.length - at);
+        System.arraycopy(children, at, nodes, at + 1, children.length - at);
+        childKeys = keys;
+        children = nodes;
+    }
+
+    // Keeps topTitles sorted by rating (desc), at most k entries, one entry per title
+    void offer(String title, double rating, int k) {
+        int n = topTitles.length;
+        int existing = -1;
+        for (int i = 0; i < n; i++) {
+            if (topTitles[i].equals(title)) existing = i;
+        }
+        String[] titles = topTitles;
+        double[] ratings = topRatings;
+        if (existing >= 0) {
+            titles = Arrays.copyOf(titles, n);
+            ratings = Arrays.copyOf(ratings, n);
+            System.arraycopy(titles, existing + 1, titles, existing, n - existing - 1);
+            System.arraycopy(ratings, existing + 1, ratings, existing, n - existing - 1);
+            n--;
+        } else if (n == k && rating <= ratings[n - 1]) {
+            return;
+        }
+        int at = 0;
+        while (at < n && ratings[at] >= rating) at++;
+        int size = Math.min(n + 1, k);
+        String[] newTitles = new String[size];
+        double[] newRatings = new double[size];
+        System.arraycopy(titles, 0, newTitles, 0, at);
+        System.arraycopy(ratings, 0, newRatings, 0, at);
+        newTitles[at] = title;
+        newRatings[at] = rating;
+        System.arraycopy(titles, at, newTitles, at + 1, size - at - 1);
+        System.arraycopy(ratings, at, newRatings, at + 1, size - at - 1);
+        topTitles = newTitles;
+        topRatings = newRatings;
+    }
 }
 
-// Core Trie-based index
-class Trie {
-    private TrieNode root = new TrieNode();
+// Compressed (radix) trie index, keyed by lower-cased title. Autocomplete is O(prefix length):
+// it stops at the node covering the prefix and returns that node's precomputed top-K.
+// Re-inserting a title may raise its rating; lowering it leaves top-K approximate until a rebuild
+class Trie implements AutocompleteIndex {
+    private static final int DEFAULT_TOP_K = 10;
+
+    private final int topK;
+    private final TrieNode root = new TrieNode("");
+    private final AtomicLong generation = new AtomicLong();
+
+    public Trie() {
+        this(DEFAULT_TOP_K);
+    }
+
+    public Trie(int topK) {
+        this.topK = topK;
+    }
+
+    public void insert(String title) {
+        insert(title, 0.0);
+    }
+
+    public long generation() { return generation.get(); }
+
+    public void insert(String title, double rating) {
+        generation.incrementAndGet();
+        String key = normalize(title);
+        TrieNode node = root;
+        node.offer(title, rating, topK);
+        int pos = 0;
+        while (pos < key.length()) {
+            TrieNode child = node.child(key.charAt(pos));
+            if (child == null) {
+                TrieNode leaf = new TrieNode(key.substring(pos));
+                leaf.offer(title, rating, topK);
+                node.putChild(leaf);
+                return;
+            }
+            int common = commonPrefixLength(child.label, key, pos);
+            if (common < child.label.length()) {
+                child = split(node, child, common);
+            }
+            child.offer(title, rating, topK);
+            node = child;
+            pos += common;
+        }
+    }
+
+    public List<String> searchPrefix(String prefix) {
+        TrieNode node = findPrefixNode(normalize(prefix));
+        return node == null ? List.of() : List.of(node.topTitles);
+    }
+
+    // Same as searchPrefix, with the ratings, for callers that merge results from several tries
+    public List<ScoredTitle> searchPrefixScored(String prefix) {
+        TrieNode node = findPrefixNode(normalize(prefix));
+        if (node == null) return List.of();
+        List<ScoredTitle> results = new ArrayList<>(node.topTitles.length);
+        for (int i = 0; i < node.topTitles.length; i++) results.add(new ScoredTitle(node.topTitles[i], node.topRatings[i]));
+        return results;
+    }
+
+    private TrieNode findPrefixNode(String key) {
+        TrieNode node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            TrieNode child = node.child(key.charAt(pos));
+            if (child == null) return null;
+            int common = commonPrefixLength(child.label, key, pos);
+            if (pos + common == key.length()) return child;
+            if (common < child.label.length()) return null;
+            node = child;
+            pos += common;
+        }
+        return node;
+    }
+
+    // Walks the trie with a Levenshtein automaton whose state is the DP row against the query
+    // (Ukkonen/Schulz-Mihov). A subtree is pruned as soon as every cell exceeds maxEdits, and once the
+    // whole query is matched the node's precomputed top-K is taken instead of descending further.
+    // Results are ordered by edit distance, then rating
+    public List<String> searchFuzzyPrefix(String prefix, int maxEdits) {
+        String key = normalize(prefix);
+        int[] row = new int[key.length() + 1];
+        for (int i = 0; i < row.length; i++) row[i] = i;
+        Map<String, Integer> distances = new HashMap<>();
+        Map<String, Double> ratings = new HashMap<>();
+        if (row[key.length()] <= maxEdits) collect(root, row[key.length()], distances, ratings);
+        if (row[key.length()] > 0) fuzzyWalk(root, key, row, maxEdits, distances, ratings);
+        return distances.keySet().stream()
+                .sorted(Comparator.<String>comparingInt(distances::get)
+                        .thenComparing(Comparator.<String>comparingDouble(ratings::get).reversed()))
+                .limit(topK)
+                .toList();
+    }
+
+    private void fuzzyWalk(TrieNode node, String key, int[] row, int maxEdits,
+                           Map<String, Integer> distances, Map<String, Double> ratings) {
+        for (TrieNode child : node.children) {
+            int[] current = row;
+            boolean descend = true;
+            for (int i = 0; i < child.label.length() && descend; i++) {
+                current = step(current, child.label.charAt(i), key);
+                int matched = current[key.length()];
+                int best = Arrays.stream(current).min().getAsInt();
+                if (best > maxEdits) {
+                    descend = false;
+                } else if (matched <= maxEdits) {
+                    collect(child, matched, distances, ratings);
+                    // deeper nodes can only help if some cell could still reach a smaller distance
+                    descend = best < matched;
+                }
+            }
+            if (descend) fuzzyWalk(child, key, current, maxEdits, distances, ratings);
+        }
+    }
+
+    private static int[] step(int[] row, char c, String key) {
+        int[] next = new int[row.length];
+        next[0] = row[0] + 1;
+        for (int i = 1; i < row.length; i++) {
+            int substitute = row[i - 1] + (key.charAt(i - 1) == c ? 0 : 1);
+            next[i] = Math.min(substitute, Math.min(row[i] + 1, next[i - 1] + 1));
+        }
+        return next;
+    }
 
-    public void insert(String title) { /* build trie */ }
-    public List<String> searchPrefix(String prefix) { return List.of(); }
+    private static void collect(TrieNode node, int distance, Map<String, Integer> distances, Map<String, Double> ratings) {
+        for (int i = 0; i < node.topTitles.length; i++) {
+            distances.merge(node.topTitles[i], distance, Math::min);
+            ratings.put(node.topTitles[i], node.topRatings[i]);
+        }
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    // Splits child's edge after `at` chars; the new middle node covers the same subtree, so it inherits the top-K
+    private TrieNode split(TrieNode parent, TrieNode child, int at) {
+        TrieNode middle = new TrieNode(child.label.substring(0, at));
+        middle.topTitles = child.topTitles;
+        middle.topRatings = child.topRatings;
+        child.label = child.label.substring(at);
+        middle.putChild(child);
+        parent.putChild(middle);
+        return middle;
+    }
+
+    private static int commonPrefixLength(String label, String key, int from) {
+        int max = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(from + i)) i++;
+        return i;
+    }
+}
+
+// Immutable autocomplete index for read-only catalogue snapshots: a minimal acyclic finite-state
+// automaton built with Daciuk's incremental algorithm and stored in a flat byte layout that is
+// searched in place (heap array or memory-mapped file, so loading is just an mmap).
+//
+// Each entry is encoded as  normalizedTitle \0 title \0 weightChar,  which keeps the original title
+// and makes the weight part of the accepted language, so equal-suffix states still merge safely.
+// Node layout: [byte final][int maxWeight][int arcCount] then arcs sorted by label: [char label][int target]
+class FstIndex implements AutocompleteIndex {
+    private static final int MAGIC = 0x46535431;
+    private static final int HEADER_BYTES = 8;
+    private static final int NODE_HEADER_BYTES = 9;
+    private static final int ARC_BYTES = 6;
+    private static final char SEPARATOR = '\0';
+
+    private final ByteBuffer data;
+    private final int root;
+    private final int topK;
+
+    private FstIndex(ByteBuffer data, int topK) {
+        if (data.getInt(0) != MAGIC) throw new IllegalArgumentException("Not an FST index");
+        this.data = data;
+        this.root = data.getInt(4);
+        this.topK = topK;
+    }
+
+    public static FstIndex build(Map<String, Double> ratingsByTitle, int topK) {
+        List<String> entries = new ArrayList<>(ratingsByTitle.size());
+        ratingsByTitle.forEach((title, rating) -> entries.add(Trie.normalize(title) + SEPARATOR + title + SEPARATOR + toWeight(rating)));
+        Collections.sort(entries);
+        Builder builder = new Builder();
+        for (String entry : entries) builder.add(entry);
+        return new FstIndex(ByteBuffer.wrap(builder.finish()), topK);
+    }
+
+    public static FstIndex load(Path path, int topK) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new FstIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), topK);
+        }
+    }
+
+    public void save(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer src = data.duplicate();
+            src.clear();
+            while (src.hasRemaining()) channel.write(src);
+        }
+    }
+
+    public int sizeInBytes() { return data.capacity(); }
+
+    public long generation() { return 0; }
+
+    public List<String> searchPrefix(String prefix) {
+        String key = Trie.normalize(prefix);
+        int node = root;
+        for (int i = 0; i < key.length() && node >= 0; i++) node = target(node, key.charAt(i));
+        return node < 0 ? List.of() : topCompletions(node);
+    }
+
+    // Best-first search: an arc's bound is the best weight reachable through it, so entries
+    // come out of the queue in weight order and the first K finals are the exact top-K
+    private List<String> topCompletions(int start) {
+        record Path(int node, int bound, char label, Path parent) {}
+        PriorityQueue<Path> queue = new PriorityQueue<>((a, b) -> Integer.compare(b.bound, a.bound));
+        queue.add(new Path(start, data.getInt(start + 1), (char) 0, null));
+        List<String> results = new ArrayList<>(topK);
+        while (!queue.isEmpty() && results.size() < topK) {
+            Path path = queue.poll();
+            if (data.get(path.node) != 0) {
+                StringBuilder sb = new StringBuilder();
+                for (Path p = path; p.parent != null; p = p.parent) sb.append(p.label);
+                // The prefix only consumed normalized-title chars, so the first separator ends the
+                // normalized title and the title runs up to the separator before the weight char
+                String suffix = sb.reverse().toString();
+                results.add(suffix.substring(suffix.indexOf(SEPARATOR) + 1, suffix.length() - 2));
+                continue;
+            }
+            int arcs = data.getInt(path.node + 5);
+            for (int i = 0; i < arcs; i++) {
+                int arc = path.node + NODE_HEADER_BYTES + i * ARC_BYTES;
+                char label = data.getChar(arc);
+                int target = data.getInt(arc + 2);
+                queue.add(new Path(target, arcBound(label, target), label, path));
+            }
+        }
+        return results;
+    }
+
+    private int arcBound(char label, int target) {
+        return data.get(target) != 0 ? label : data.getInt(target + 1);
+    }
+
+    private int target(int node, char label) {
+        int lo = 0, hi = data.getInt(node + 5) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int arc = node + NODE_HEADER_BYTES + mid * ARC_BYTES;
+            char c = data.getChar(arc);
+            if (c < label) lo = mid + 1;
+            else if (c > label) hi = mid - 1;
+            else return data.getInt(arc + 2);
+        }
+        return -1;
+    }
+
+    // Biased by one so a zero or negative rating never encodes as SEPARATOR
+    private static char toWeight(double rating) {
+        return (char) Math.max(1, Math.min(Character.MAX_VALUE, 1 + Math.round(rating * 100)));
+    }
+
+    // Daciuk et al. incremental construction from sorted input: only the path of the previous
+    // entry is mutable; everything left of it is frozen, deduplicated against the register and written
+    private static class Builder {
+        private static class Node {
+            boolean isFinal;
+            StringBuilder labels = new StringBuilder();
+            int[] targets = new int[4];
+            int[] bounds = new int[4];
+        }
+
+        private final List<Node> path = new ArrayList<>(List.of(new Node()));
+        private final Map<String, int[]> register = new HashMap<>();
+        private ByteBuffer out = ByteBuffer.allocate(1 << 16).position(HEADER_BYTES);
+        private String previous = "";
+
+        void add(String entry) {
+            if (entry.equals(previous)) return;
+            int common = 0;
+            while (common < Math.min(previous.length(), entry.length()) && previous.charAt(common) == entry.charAt(common)) common++;
+            freezeFrom(common);
+            for (int i = common; i < entry.length(); i++) {
+                Node parent = path.get(i);
+                parent.labels.append(entry.charAt(i));
+                path.add(new Node());
+            }
+            path.get(entry.length()).isFinal = true;
+            previous = entry;
+        }
+
+        byte[] finish() {
+            freezeFrom(0);
+            int root = write(path.get(0))[0];
+            out.putInt(0, MAGIC);
+            out.putInt(4, root);
+            return Arrays.copyOf(out.array(), out.position());
+        }
+
+        // Freezes path nodes deeper than `depth`, bottom-up, and links each into its parent's last arc
+        private void freezeFrom(int depth) {
+            for (int i = path.size() - 1; i > depth; i--) {
+                int[] frozen = write(path.remove(i));
+                Node parent = path.get(i - 1);
+                int arc = parent.labels.length() - 1;
+                if (arc >= parent.targets.length) {
+                    parent.targets = Arrays.copyOf(parent.targets, arc * 2);
+                    parent.bounds = Arrays.copyOf(parent.bounds, arc * 2);
+                }
+                parent.targets[arc] = frozen[0];
+                parent.bounds[arc] = frozen[2] != 0 ? parent.labels.charAt(arc) : frozen[1];
+            }
+        }
+
+        // Returns {offset, maxWeight, isFinal}, reusing an identical node from the register when there is one
+        private int[] write(Node node) {
+            int arcs = node.labels.length();
+            StringBuilder signature = new StringBuilder(1 + arcs * 3).append(node.isFinal ? '1' : '0');
+            for (int i = 0; i < arcs; i++) {
+                signature.append(node.labels.charAt(i)).append((char) (node.targets[i] >>> 16)).append((char) node.targets[i]);
+            }
+            int maxWeight = Arrays.stream(node.bounds, 0, arcs).max().orElse(0);
+            return register.computeIfAbsent(signature.toString(), k -> {
+                ensureCapacity(NODE_HEADER_BYTES + arcs * ARC_BYTES);
+                int offset = out.position();
+                out.put((byte) (node.isFinal ? 1 : 0)).putInt(maxWeight).putInt(arcs);
+                for (int i = 0; i < arcs; i++) out.putChar(node.labels.charAt(i)).putInt(node.targets[i]);
+                return new int[] { offset, maxWeight, node.isFinal ? 1 : 0 };
+            });
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (out.remaining() >= bytes) return;
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+    }
+}
+
+// Near-real-time index built from segments. New titles land in a small mutable segment (a concurrent
+// skip list, readable without locks); when it fills up it is frozen into an immutable Trie segment, and a
+// background task merges small immutable segments. Every change publishes a new Snapshot through an
+// AtomicReference, so readers never lock and always see a consistent segment list.
+// Writers (add, flush, merge swap) serialize on the index monitor
+class SegmentedIndex implements AutocompleteIndex {
+    private static final char SEPARATOR = '\0';
+
+    // Immutable once published: a Trie that is never inserted into again, plus its title ratings
+    private static class Segment {
+        final Trie trie;
+        final Map<String, Double> ratings;
+
+        Segment(Map<String, Double> ratings, int topK) {
+            this.ratings = Map.copyOf(ratings);
+            this.trie = new Trie(topK);
+            this.ratings.forEach(trie::insert);
+        }
+    }
+
+    // Mutable segment keyed by "normalizedTitle \0 title", so a prefix search is a sub-map scan
+    private record Snapshot(List<Segment> segments, ConcurrentSkipListMap<String, Double> mutable) {}
+
+    private final int topK;
+    private final int flushThreshold;
+    private final int maxSegments;
+    private final int mergeFactor;
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(List.of(), new ConcurrentSkipListMap<>()));
+    private final AtomicLong generation = new AtomicLong();
+    private final ScheduledExecutorService merger = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "segment-merger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Each merge must leave fewer segments than it started with, or the merger would never finish
+    public SegmentedIndex(int topK, int flushThreshold, int maxSegments, int mergeFactor) {
+        if (maxSegments < 1) throw new IllegalArgumentException("maxSegments must be at least 1: " + maxSegments);
+        if (mergeFactor < 2) throw new IllegalArgumentException("mergeFactor must be at least 2: " + mergeFactor);
+        this.topK = topK;
+        this.flushThreshold = flushThreshold;
+        this.maxSegments = maxSegments;
+        this.mergeFactor = mergeFactor;
+        merger.scheduleWithFixedDelay(this::maybeMerge, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public synchronized void add(String title, double rating) {
+        Snapshot current = snapshot.get();
+        current.mutable.put(Trie.normalize(title) + SEPARATOR + title, rating);
+        generation.incrementAndGet();
+        if (current.mutable.size() >= flushThreshold) flush();
+    }
+
+    // Freezes the mutable segment into an immutable one and starts a fresh buffer
+    public synchronized void flush() {
+        Snapshot current = snapshot.get();
+        if (current.mutable.isEmpty()) return;
+        Map<String, Double> ratings = new HashMap<>();
+        current.mutable.forEach((key, rating) -> ratings.put(key.substring(key.indexOf(SEPARATOR) + 1), rating));
+        List<Segment> segments = new ArrayList<>(current.segments);
+        segments.add(new Segment(ratings, topK));
+        snapshot.set(new Snapshot(List.copyOf(segments), new ConcurrentSkipListMap<>()));
+    }
+
+    public long generation() { return generation.get(); }
+
+    public int segmentCount() { return snapshot.get().segments.size(); }
+
+    public void close() {
+        merger.shutdownNow();
+    }
+
+    // Newest data wins when a title was re-added: a hit is ignored if the mutable segment or a newer
+    // segment also holds that title. Until a merge folds them together, a segment's top-K that is mostly
+    // superseded titles can make the merged list slightly short
+    public List<String> searchPrefix(String prefix) {
+        Snapshot current = snapshot.get();
+        String key = Trie.normalize(prefix);
+        Map<String, Double> candidates = new HashMap<>();
+        current.mutable.subMap(key, key + Character.MAX_VALUE).forEach((entry, rating) ->
+                candidates.put(entry.substring(entry.indexOf(SEPARATOR, key.length()) + 1), rating));
+        for (int i = current.segments.size() - 1; i >= 0; i--) {
+            Segment segment = current.segments.get(i);
+            for (String title : segment.trie.searchPrefix(key)) {
+                if (!supersededAfter(current, i, title)) candidates.putIfAbsent(title, segment.ratings.get(title));
+            }
+        }
+        return candidates.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static boolean supersededAfter(Snapshot snapshot, int segmentIndex, String title) {
+        if (snapshot.mutable.containsKey(Trie.normalize(title) + SEPARATOR + title)) return true;
+        for (int j = segmentIndex + 1; j < snapshot.segments.size(); j++) {
+            if (snapshot.segments.get(j).ratings.containsKey(title)) return true;
+        }
+        return false;
+    }
+
+    // Runs on the scheduler, where an escaping exception would cancel every future merge
+    private void maybeMerge() {
+        try {
+            while (snapshot.get().segments.size() > maxSegments) mergeOnce();
+        } catch (RuntimeException e) {
+            System.err.println("Segment merge failed, retrying on the next run: " + e);
+        }
+    }
+
+    // Once there are too many segments, the adjacent run of mergeFactor segments with the fewest titles
+    // is rebuilt as one. Merging only adjacent segments keeps the newest-wins order intact.
+    // The rebuild runs without the writer lock; only the swap is serialized with add/flush
+    private void mergeOnce() {
+        List<Segment> segments = snapshot.get().segments;
+        int width = Math.min(mergeFactor, segments.size());
+        int start = 0;
+        long smallest = Long.MAX_VALUE;
+        for (int i = 0; i + width <= segments.size(); i++) {
+            long size = segments.subList(i, i + width).stream().mapToLong(segment -> segment.ratings.size()).sum();
+            if (size < smallest) {
+                smallest = size;
+                start = i;
+            }
+        }
+        List<Segment> toMerge = segments.subList(start, start + width);
+        Map<String, Double> ratings = new HashMap<>();
+        for (Segment segment : toMerge) ratings.putAll(segment.ratings);
+        Segment merged = new Segment(ratings, topK);
+        synchronized (this) {
+            // flushes only append, so the merged run is still contiguous at the same position
+            List<Segment> updated = new ArrayList<>(snapshot.get().segments);
+            updated.subList(start, start + width).clear();
+            updated.add(start, merged);
+            snapshot.set(new Snapshot(List.copyOf(updated), snapshot.get().mutable));
+        }
+    }
+}
+
+// One partition of the title index. Kept behind an interface so a shard can later live in another process
+interface SearchShard {
+    CompletableFuture<Void> insert(String title, double rating);
+
+    // Best-rated first, at most the shard's top-K
+    CompletableFuture<List<ScoredTitle>> searchPrefix(String prefix);
+
+    long generation();
+}
+
+// In-process shard. Inserts are applied in order on the shard's own single-thread executor under
+// the write lock; each search takes the read lock on its own virtual thread, so concurrent queries
+// use every core and only wait while an insert is being applied
+class LocalSearchShard implements SearchShard {
+    private static final ExecutorService READERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Trie trie;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService executor;
+
+    public LocalSearchShard(int id, int topK) {
+        this.trie = new Trie(topK);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "search-shard-" + id);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<Void> insert(String title, double rating) {
+        return CompletableFuture.runAsync(() -> {
+            lock.writeLock().lock();
+            try {
+                trie.insert(title, rating);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<List<ScoredTitle>> searchPrefix(String prefix) {
+        return CompletableFuture.supplyAsync(() -> {
+            lock.readLock().lock();
+            try {
+                return trie.searchPrefixScored(prefix);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }, READERS);
+    }
+
+    public long generation() { return trie.generation(); }
+
+    public void close() {
+        executor.shutdown();
+    }
+}
+
+// Scatter-gather over N shards partitioned by title hash. A query fans out to every shard in parallel,
+// waits for each until the shared deadline, and merges the per-shard top-K lists with a heap.
+// Shards that miss the deadline are skipped, so the caller gets partial results instead of waiting
+class ShardedIndex implements AutocompleteIndex {
+    private final List<SearchShard> shards;
+    private final int topK;
+    private final long shardTimeoutMillis;
+    private final LongAdder partialResponses = new LongAdder();
+
+    public ShardedIndex(List<SearchShard> shards, int topK, long shardTimeoutMillis) {
+        this.shards = List.copyOf(shards);
+        this.topK = topK;
+        this.shardTimeoutMillis = shardTimeoutMillis;
+    }
+
+    public void insert(String title, double rating) {
+        shardFor(title).insert(title, rating).join();
+    }
+
+    public List<String> searchPrefix(String prefix) {
+        List<CompletableFuture<List<ScoredTitle>>> pending = new ArrayList<>(shards.size());
+        for (SearchShard shard : shards) pending.add(shard.searchPrefix(prefix));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shardTimeoutMillis);
+        List<List<ScoredTitle>> responses = new ArrayList<>(shards.size());
+        boolean partial = false;
+        for (CompletableFuture<List<ScoredTitle>> future : pending) {
+            try {
+                responses.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | ExecutionException e) {
+                future.cancel(false);
+                partial = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                partial = true;
+                break;
+            }
+        }
+        if (partial) partialResponses.increment();
+        return merge(responses);
+    }
+
+    public long generation() {
+        return shards.stream().mapToLong(SearchShard::generation).sum();
+    }
+
+    public long getPartialResponseCount() { return partialResponses.sum(); }
+
+    // k-way merge of lists already sorted by rating: the heap holds one cursor per shard
+    private List<String> merge(List<List<ScoredTitle>> responses) {
+        PriorityQueue<int[]> heap = new PriorityQueue<>((a, b) ->
+                Double.compare(responses.get(b[0]).get(b[1]).rating(), responses.get(a[0]).get(a[1]).rating()));
+        for (int i = 0; i < responses.size(); i++) {
+            if (!responses.get(i).isEmpty()) heap.add(new int[] { i, 0 });
+        }
+        List<String> merged = new ArrayList<>(topK);
+        while (!heap.isEmpty() && merged.size() < topK) {
+            int[] cursor = heap.poll();
+            List<ScoredTitle> response = responses.get(cursor[0]);
+            merged.add(response.get(cursor[1]).title());
+            if (++cursor[1] < response.size()) heap.add(cursor);
+        }
+        return merged;
+    }
+
+    private SearchShard shardFor(String title) {
+        return shards.get(Math.floorMod(title.hashCode(), shards.size()));
+    }
+}
+
+// Posting list for one term: (docId delta, tf) pairs as variable-byte ints, appended in docId order.
+// Also keeps what the BM25 upper bound needs: the largest tf and the shortest document containing the term
+class PostingList {
+    private byte[] bytes = new byte[8];
+    private int size;
+    private int lastDoc = -1;
+    int docFreq;
+    int maxTf;
+    int minDocLength = Integer.MAX_VALUE;
+
+    void add(int doc, int tf, int docLength) {
+        writeVInt(doc - lastDoc);
+        writeVInt(tf);
+        lastDoc = doc;
+        docFreq++;
+        maxTf = Math.max(maxTf, tf);
+        minDocLength = Math.min(minDocLength, docLength);
+    }
+
+    Cursor cursor() { return new Cursor(); }
+
+    private void writeVInt(int value) {
+        if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        while ((value & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    class Cursor {
+        static final int END = Integer.MAX_VALUE;
+        private int pos;
+        int doc = -1;
+        int tf;
+
+        Cursor() { next(); }
+
+        void next() {
+            if (pos >= size) {
+                doc = END;
+                return;
+            }
+            doc += readVInt();
+            tf = readVInt();
+        }
+
+        void advanceTo(int target) {
+            while (doc < target) next();
+        }
+
+        private int readVInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+    }
+}
+
+// Full-text index over Anime title and genre, ranked with BM25. Top-K uses WAND: documents are
+// only fully scored when the summed per-term upper bounds can beat the current K-th best score.
+// Posting lists are appended in place, so adds take the write lock; queries share the read lock
+// and run in parallel
+class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final List<Anime> docs = new ArrayList<>();
+    private int[] docLengths = new int[16];
+    private long totalLength;
+    private volatile long generation;
+
+    public long generation() { return generation; }
+
+    public void add(Anime anime) {
+        List<String> tokens = tokenize(anime.getTitle() + " " + anime.getGenre());
+        Map<String, Integer> tfs = new HashMap<>();
+        for (String token : tokens) tfs.merge(token, 1, Integer::sum);
+        lock.writeLock().lock();
+        try {
+            generation++;
+            int doc = docs.size();
+            docs.add(anime);
+            if (doc == docLengths.length) docLengths = Arrays.copyOf(docLengths, doc * 2);
+            docLengths[doc] = tokens.size();
+            totalLength += tokens.size();
+            tfs.forEach((term, tf) -> postings.computeIfAbsent(term, k -> new PostingList()).add(doc, tf, tokens.size()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Anime> search(String query, int k) {
+        lock.readLock().lock();
+        try {
+            return searchLocked(query, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Anime> searchLocked(String query, int k) {
+        double avgLength = docs.isEmpty() ? 1 : (double) totalLength / docs.size();
+        List<TermCursor> cursors = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            PostingList list = postings.get(term);
+            if (list == null) continue;
+            double idf = Math.log(1 + (docs.size() - list.docFreq + 0.5) / (list.docFreq + 0.5));
+            double upperBound = idf * tfNorm(list.maxTf, list.minDocLength, avgLength);
+            cursors.add(new TermCursor(list.cursor(), idf, upperBound));
+        }
+
+        PriorityQueue<double[]> top = new PriorityQueue<>(Comparator.comparingDouble(e -> e[1]));
+        while (true) {
+            cursors.sort(Comparator.comparingInt(c -> c.postings.doc));
+            double threshold = top.size() < k ? 0 : top.peek()[1];
+            int pivot = -1;
+            double bound = 0;
+            for (int i = 0; i < cursors.size(); i++) {
+                bound += cursors.get(i).upperBound;
+                if (bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) break;
+            int pivotDoc = cursors.get(pivot).postings.doc;
+            if (pivotDoc == PostingList.Cursor.END) break;
+
+            if (cursors.get(0).postings.doc == pivotDoc) {
+                double score = 0;
+                for (TermCursor c : cursors) {
+                    if (c.postings.doc != pivotDoc) break;
+                    score += c.idf * tfNorm(c.postings.tf, docLengths[pivotDoc], avgLength);
+                    c.postings.next();
+                }
+                if (top.size() < k) {
+                    top.add(new double[] { pivotDoc, score });
+                } else if (score > threshold) {
+                    top.poll();
+                    top.add(new double[] { pivotDoc, score });
+                }
+            } else {
+                for (int i = 0; i < pivot; i++) cursors.get(i).postings.advanceTo(pivotDoc);
+            }
+        }
+
+        List<double[]> ranked = new ArrayList<>(top);
+        ranked.sort((a, b) -> Double.compare(b[1], a[1]));
+        return ranked.stream().map(e -> docs.get((int) e[0])).toList();
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static double tfNorm(int tf, int docLength, double avgLength) {
+        return tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLength / avgLength));
+    }
+
+    private static class TermCursor {
+        final PostingList.Cursor postings;
+        final double idf;
+        final double upperBound;
+
+        TermCursor(PostingList.Cursor postings, double idf, double upperBound) {
+            this.postings = postings;
+            this.idf = idf;
+            this.upperBound = upperBound;
+        }
+    }
+}
+
+// Bounded LRU cache of query results with a TTL. Each entry remembers the index generation it
+// was computed against and is dropped lazily on read once the index has moved on
+class QueryCache {
+    private static class Entry {
+        final List<Anime> results;
+        final long generation;
+        final long expiresAt;
+
+        Entry(List<Anime> results, long generation, long expiresAt) {
+            this.results = results;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public QueryCache(int capacity, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized List<Anime> get(String query, long generation) {
+        Entry entry = entries.get(query);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.generation != generation || System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(query);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.results;
+    }
+
+    public double hitRatio() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public synchronized void put(String query, List<Anime> results, long generation) {
+        entries.put(query, new Entry(results, generation, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Case, surrounding and repeated whitespace don't change the query: "One " and "one" share an entry
+    public static String normalize(String query) {
+        return Trie.normalize(query.strip().replaceAll("\\s+", " "));
+    }
+}
+
+// Multi-get against the backing store: one round trip for a whole batch of titles
+interface AnimeLoader {
+    Map<String, Anime> loadAll(List<String> titles);
+}
+
+class DatabaseAnimeLoader implements AnimeLoader {
+    public Map<String, Anime> loadAll(List<String> titles) {
+        // simulate one batched DB call (WHERE title IN (...))
+        Map<String, Anime> rows = new HashMap<>();
+        for (String title : titles) rows.put(title, new Anime());
+        return rows;
+    }
+}
+
+// Turns titles into Anime rows: local LRU row cache first, then the misses in batches fetched
+// in parallel on virtual threads, with a semaphore capping in-flight DB calls
+class AnimeHydrator {
+    private final AnimeLoader loader;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Anime> rowCache;
+
+    public AnimeHydrator(AnimeLoader loader, int batchSize, int maxConcurrentFetches, int rowCacheCapacity) {
+        this.loader = loader;
+        this.batchSize = batchSize;
+        this.inFlight = new Semaphore(maxConcurrentFetches);
+        this.rowCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Anime> eldest) {
+                return size() > rowCacheCapacity;
+            }
+        });
+    }
+
+    // Result is aligned with `titles`; a title the store doesn't know maps to null
+    public List<Anime> hydrate(List<String> titles) {
+        Anime[] rows = new Anime[titles.size()];
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = rowCache.get(titles.get(i));
+            if (rows[i] == null) misses.add(titles.get(i));
+        }
+        if (!misses.isEmpty()) {
+            Map<String, Anime> loaded = fetch(misses);
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == null) rows[i] = loaded.get(titles.get(i));
+            }
+        }
+        return Arrays.asList(rows);
+    }
+
+    private Map<String, Anime> fetch(List<String> titles) {
+        List<Future<Map<String, Anime>>> batches = new ArrayList<>();
+        for (int from = 0; from < titles.size(); from += batchSize) {
+            List<String> batch = titles.subList(from, Math.min(from + batchSize, titles.size()));
+            batches.add(executor.submit(() -> {
+                inFlight.acquire();
+                try {
+                    return loader.loadAll(batch);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+        Map<String, Anime> loaded = new HashMap<>();
+        try {
+            for (Future<Map<String, Anime>> batch : batches) loaded.putAll(batch.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hydrating results", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to hydrate results", e.getCause());
+        }
+        rowCache.putAll(loaded);
+        return loaded;
+    }
+}
+
+// Search results whose first `eagerCount` rows are hydrated up front; the rest are
+// loaded a page at a time the first time someone reads them
+class LazyAnimeList extends AbstractList<Anime> {
+    private final List<String> titles;
+    private final AnimeHydrator hydrator;
+    private final int pageSize;
+    private final AtomicReferenceArray<Anime> rows;
+
+    public LazyAnimeList(List<String> titles, AnimeHydrator hydrator, int eagerCount) {
+        this.titles = List.copyOf(titles);
+        this.hydrator = hydrator;
+        this.pageSize = Math.max(1, eagerCount);
+        this.rows = new AtomicReferenceArray<>(titles.size());
+        if (!titles.isEmpty() && eagerCount > 0) loadPage(0);
+    }
+
+    public Anime get(int index) {
+        Anime row = rows.get(index);
+        if (row == null) {
+            loadPage(index / pageSize);
+            row = rows.get(index);
+        }
+        return row;
+    }
+
+    public int size() { return titles.size(); }
+
+    private void loadPage(int page) {
+        int from = page * pageSize;
+        int to = Math.min(from + pageSize, titles.size());
+        List<Anime> loaded = hydrator.hydrate(titles.subList(from, to));
+        for (int i = from; i < to; i++) rows.compareAndSet(i, null, loaded.get(i - from));
+    }
 }
 
 // SearchService
 class SearchService {
-    private Trie trie;
-    private Map<String, List<Anime>> cache = new ConcurrentHashMap<>();
+    private static final int FULL_TEXT_TOP_K = 20;
+    private static final int CACHE_CAPACITY = 10_000;
+    private static final long CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    private static final int EAGER_HYDRATION_COUNT = 10;
+    private static final int SHORT_QUERY_LENGTH = 5;
 
-    public SearchService(Trie trie) {
+    private AutocompleteIndex trie;
+    private InvertedIndex textIndex;
+    private QueryCache cache = new QueryCache(CACHE_CAPACITY, CACHE_TTL_MILLIS);
+    private AnimeHydrator hydrator = new AnimeHydrator(new DatabaseAnimeLoader(), 50, 8, 100_000);
+
+    public SearchService(AutocompleteIndex trie) {
+        this(trie, null);
+    }
+
+    public SearchService(AutocompleteIndex trie, InvertedIndex textIndex) {
         this.trie = trie;
+        this.textIndex = textIndex;
     }
 
+    // Title prefix first, then typo-tolerant prefix, then BM25 full-text search
     public List<Anime> search(String query) {
-        if (cache.containsKey(query))
-            return cache.get(query);
+        String normalized = QueryCache.normalize(query);
+        long generation = indexGeneration();
+        List<Anime> cached = cache.get(normalized, generation);
+        if (cached != null)
+            return cached;
 
-        List<String> matches = trie.searchPrefix(query);
-        List<Anime> results = matches.stream().map(this::fetchFromDB).toList();
-        cache.put(query, results);
+        List<String> matches = trie.searchPrefix(normalized);
+        if (matches.isEmpty())
+            matches = trie.searchFuzzyPrefix(normalized, normalized.length() <= SHORT_QUERY_LENGTH ? 1 : 2);
+        List<Anime> results = !matches.isEmpty() || textIndex == null
+                ? new LazyAnimeList(matches, hydrator, EAGER_HYDRATION_COUNT)
+                : textIndex.search(normalized, FULL_TEXT_TOP_K);
+        cache.put(normalized, results, generation);
         return results;
     }
 
-    private Anime fetchFromDB(String title) {
-        // simulate DB call
-        return new Anime();
+    public double cacheHitRatio() { return cache.hitRatio(); }
+
+    // Read before searching, so results computed during a concurrent insert are tagged with the older generation
+    private long indexGeneration() {
+        return trie.generation() + (textIndex == null ? 0 : textIndex.generation());
     }
 }
 
 public class Main {
     public static void main(String[] args) {
         Trie trie = new Trie();
-        trie.insert("Naruto");
-        trie.insert("One Piece");
-        trie.insert("One Punch Man");
+        trie.insert("Naruto", 8.0);
+        trie.insert("One Piece", 9.0);
+        trie.insert("One Punch Man", 8.5);
+
+        InvertedIndex textIndex = new InvertedIndex();
+        textIndex.add(new Anime("1", "Naruto", "Ninja Adventure", 8.0));
+        textIndex.add(new Anime("2", "One Piece", "Pirate Adventure", 9.0));
+        textIndex.add(new Anime("3", "One Punch Man", "Superhero Comedy", 8.5));
 
-        SearchService service = new SearchService(trie);
+        SearchService service = new SearchService(trie, textIndex);
         service.search("One"); // autocomplete
+        service.search("pirate adventure"); // full-text
+
+        // read-only snapshot served from the compiled FST
+        FstIndex snapshot = FstIndex.build(Map.of("Naruto", 8.0, "One Piece", 9.0, "One Punch Man", 8.5), 10);
+        new SearchService(snapshot).search("One");
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Per-query cost of the autocomplete paths over a synthetic catalogue, driven by a Zipf query log.
+// QueryLogReplay covers end-to-end percentiles; this isolates each index
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+public class SearchServiceBenchmark {
+    private static final int QUERY_LOG_SIZE = 1 << 16;
+
+    @Param({"100000", "1000000"})
+    int titleCount;
+
+    Trie trie;
+    FstIndex fst;
+    SearchService service;
+    String[] queries;
+    int next;
+
+    @Setup
+    public void setup() {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(42);
+        Map<String, Double> titles = catalogue.titles(titleCount);
+        trie = new Trie();
+        titles.forEach(trie::insert);
+        fst = FstIndex.build(titles, 10);
+        service = new SearchService(trie);
+        queries = catalogue.queryLog(titles, QUERY_LOG_SIZE, 10_000, 1.0);
+    }
+
+    @Benchmark
+    public List<String> triePrefix() {
+        return trie.searchPrefix(nextQuery());
+    }
+
+    @Benchmark
+    public List<String> fstPrefix() {
+        return fst.searchPrefix(nextQuery());
+    }
+
+    @Benchmark
+    public List<String> trieFuzzyPrefix() {
+        return trie.searchFuzzyPrefix(nextQuery(), 2);
+    }
+
+    @Benchmark
+    public List<Anime> serviceSearchWithCache() {
+        return service.search(nextQuery());
+    }
+
+    private String nextQuery() {
+        return queries[next++ & (QUERY_LOG_SIZE - 1)];
+    }
+}